@@ -0,0 +1,83 @@
+package com.spygamingog.spynpcs.benchmarks;
+
+import com.spygamingog.spynpcs.models.SpyNPC;
+import com.spygamingog.spynpcs.utils.IntObjectMap;
+import org.bukkit.World;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The USE_ENTITY lookup path: entity id of a click -> NPC. {@code intMap} is the
+ * current IntObjectMap probe; {@code twoMaps} is the old path (containsKey + get
+ * on a boxed entityId -> UUID map, then the UUID -> NPC map). Most clicks on a
+ * real server hit mobs and players, so the miss case matters as much as the hit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntityLookupBenchmark {
+    private static final int KEYS = 1024;
+
+    @Param({"100", "10000"})
+    public int npcCount;
+
+    @Param({"hit", "miss"})
+    public String lookup;
+
+    private IntObjectMap<SpyNPC> byEntityId;
+    private Map<Integer, UUID> entityIdToUuid;
+    private Map<UUID, SpyNPC> npcs;
+    private int[] keys;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        World world = StandIns.world("world");
+        List<SpyNPC> loaded = StandIns.npcs(world, npcCount, 1000.0, 1L);
+
+        byEntityId = new IntObjectMap<>();
+        entityIdToUuid = new ConcurrentHashMap<>();
+        npcs = new ConcurrentHashMap<>();
+        Map<Integer, SpyNPC> all = new HashMap<>();
+        for (SpyNPC npc : loaded) {
+            all.put(npc.getEntityId(), npc);
+            entityIdToUuid.put(npc.getEntityId(), npc.getUuid());
+            npcs.put(npc.getUuid(), npc);
+        }
+        byEntityId.putAll(all);
+
+        // Pre-drawn ids so the benchmark doesn't measure the random generator
+        Random random = new Random(2L);
+        keys = new int[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = lookup.equals("hit")
+                    ? loaded.get(random.nextInt(loaded.size())).getEntityId()
+                    : random.nextInt(100_000); // below the NPC id range, like real entities
+        }
+    }
+
+    @Benchmark
+    public SpyNPC intMap() {
+        return byEntityId.get(keys[next++ & (KEYS - 1)]);
+    }
+
+    @Benchmark
+    public SpyNPC twoMaps() {
+        int entityId = keys[next++ & (KEYS - 1)];
+        if (entityIdToUuid.containsKey(entityId)) {
+            UUID npcUuid = entityIdToUuid.get(entityId);
+            return npcs.get(npcUuid);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,74 @@
+package com.spygamingog.spynpcs.benchmarks;
+
+import com.spygamingog.spynpcs.models.SpyNPC;
+import com.spygamingog.spynpcs.utils.NameIndex;
+import org.bukkit.ChatColor;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * /spynpc name lookup and tab completion: the NameIndex against the old linear
+ * scan that stripped colors from every NPC name on every call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NameIndexBenchmark {
+    @Param({"1000", "10000"})
+    public int npcCount;
+
+    private List<SpyNPC> npcs;
+    private NameIndex index;
+    private String lookupName;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        npcs = StandIns.npcs(StandIns.world("world"), npcCount, 1000.0, 1L);
+        index = new NameIndex();
+        for (SpyNPC npc : npcs) {
+            index.put(npc.getUuid(), npc.getName());
+        }
+        lookupName = ChatColor.stripColor(npcs.get(npcCount / 2).getName());
+    }
+
+    @Benchmark
+    public UUID indexFind() {
+        return index.find(lookupName);
+    }
+
+    @Benchmark
+    public SpyNPC linearFind() {
+        String strippedName = ChatColor.stripColor(lookupName);
+        for (SpyNPC npc : npcs) {
+            if (ChatColor.stripColor(npc.getName()).equalsIgnoreCase(strippedName)) {
+                return npc;
+            }
+        }
+        return null;
+    }
+
+    // "npc 12" matches a handful of names, like an admin who typed most of a name
+    @Benchmark
+    public List<String> indexComplete() {
+        return index.complete("npc 12", 100);
+    }
+
+    @Benchmark
+    public List<String> linearComplete() {
+        List<String> names = new ArrayList<>();
+        for (SpyNPC npc : npcs) {
+            names.add(ChatColor.stripColor(npc.getName()));
+        }
+        return names.stream()
+                .filter(name -> name.toLowerCase().startsWith("npc 12"))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,118 @@
+package com.spygamingog.spynpcs.benchmarks;
+
+import com.spygamingog.spynpcs.models.SpyNPC;
+import com.spygamingog.spynpcs.storage.NPCData;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.EntityType;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * In-memory stand-ins for the parts of Bukkit the benchmarked code touches. A
+ * World only has to answer getName/equals/hashCode for the grid and distance
+ * checks, so it is a dynamic proxy instead of a running server.
+ */
+final class StandIns {
+    private StandIns() {}
+
+    static World world(String name) {
+        return (World) Proxy.newProxyInstance(World.class.getClassLoader(), new Class<?>[]{World.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getName":
+                    return name;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return name.hashCode();
+                case "toString":
+                    return "World{" + name + "}";
+                default:
+                    throw new UnsupportedOperationException("World stand-in: " + method.getName());
+            }
+        });
+    }
+
+    /**
+     * NPCs spread uniformly over a square of the given size around 0,0.
+     */
+    static List<SpyNPC> npcs(World world, int count, double size, long seed) {
+        Random random = new Random(seed);
+        List<SpyNPC> npcs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Location location = new Location(world, (random.nextDouble() - 0.5) * size, 64.0, (random.nextDouble() - 0.5) * size);
+            npcs.add(SpyNPC.builder()
+                    .uuid(new UUID(random.nextLong(), random.nextLong()))
+                    .entityId(100_000 + i)
+                    .name("&eNPC " + i)
+                    .localName("npc" + i)
+                    .type(i % 2 == 0 ? EntityType.PLAYER : EntityType.VILLAGER)
+                    .location(location)
+                    .build());
+        }
+        return npcs;
+    }
+
+    static List<Location> players(World world, int count, double size, long seed) {
+        Random random = new Random(seed);
+        List<Location> players = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            players.add(new Location(world, (random.nextDouble() - 0.5) * size, 64.0, (random.nextDouble() - 0.5) * size));
+        }
+        return players;
+    }
+
+    /**
+     * Stored NPCs shaped like real ones: a skin (a few distinct ones shared between
+     * NPCs, like hub NPCs reusing the same skins) and a couple of actions.
+     */
+    static List<NPCData> data(int count, long seed) {
+        Random random = new Random(seed);
+        String[] skinValues = new String[16];
+        for (int i = 0; i < skinValues.length; i++) {
+            skinValues[i] = randomBase64(random, 600);
+        }
+
+        List<NPCData> npcs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            NPCData data = new NPCData();
+            data.setUuid(new UUID(random.nextLong(), random.nextLong()).toString());
+            data.setEntityId(100_000 + i);
+            data.setName("&eNPC " + i);
+            data.setLocalName("npc" + i);
+            data.setType(EntityType.PLAYER.name());
+            data.setSkinName("skin" + (i % skinValues.length));
+            data.setSkinValue(skinValues[i % skinValues.length]);
+            data.setSkinSignature(skinValues[(i + 1) % skinValues.length]);
+
+            NPCData.LocationData location = new NPCData.LocationData();
+            location.setWorld("world");
+            location.setX(random.nextDouble() * 1000);
+            location.setY(64);
+            location.setZ(random.nextDouble() * 1000);
+            data.setLocation(location);
+
+            for (int a = 0; a < 2; a++) {
+                NPCData.ActionData action = new NPCData.ActionData();
+                action.setType(a == 0 ? "MESSAGE" : "COMMAND");
+                action.setValue(a == 0 ? "&aHello %player%!" : "warp hub" + i);
+                data.getActions().add(action);
+            }
+            npcs.add(data);
+        }
+        return npcs;
+    }
+
+    private static String randomBase64(Random random, int length) {
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,78 @@
+package com.spygamingog.spynpcs.benchmarks;
+
+import com.spygamingog.spynpcs.storage.BinaryNPCStorage;
+import com.spygamingog.spynpcs.storage.JsonNPCStorage;
+import com.spygamingog.spynpcs.storage.NPCData;
+import com.spygamingog.spynpcs.storage.NPCStorage;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Writing every NPC (what the persistence thread does for a full save) and
+ * loading them all at startup, for the JSON folder and the binary file. Runs
+ * against a temp directory on the local disk, so results depend on it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StorageBenchmark {
+    @Param({"json", "binary"})
+    public String type;
+
+    @Param({"1000", "10000"})
+    public int npcCount;
+
+    @Param({"0"})
+    public int loadThreads;
+
+    private Path directory;
+    private NPCStorage storage;
+    private List<NPCData> data;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("spynpcs-bench");
+        Logger logger = Logger.getLogger("SpyNPCs-Benchmark");
+        storage = type.equals("json")
+                ? new JsonNPCStorage(new File(directory.toFile(), "npcs"), logger)
+                : new BinaryNPCStorage(new File(directory.toFile(), "npcs.bin"), logger);
+        data = StandIns.data(npcCount, 1L);
+        saveAll();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Benchmark
+    public void saveAll() {
+        for (NPCData npc : data) {
+            storage.save(npc);
+        }
+        storage.flush();
+    }
+
+    @Benchmark
+    public NPCStorage.LoadResult loadAll() {
+        NPCStorage.LoadResult result = storage.load(loadThreads);
+        if (result.npcs().size() != npcCount) {
+            throw new IllegalStateException("Loaded " + result.npcs().size() + " of " + npcCount + " NPCs");
+        }
+        return result;
+    }
+}
@@ -0,0 +1,165 @@
+package com.spygamingog.spynpcs.benchmarks;
+
+import com.spygamingog.spynpcs.models.SpyNPC;
+import com.spygamingog.spynpcs.visibility.NPCSpatialIndex;
+import com.spygamingog.spynpcs.visibility.SpawnQueue;
+import com.spygamingog.spynpcs.visibility.VisibilityExecutor;
+import com.spygamingog.spynpcs.visibility.VisibilityPass;
+import com.spygamingog.spynpcs.visibility.VisibilityTracker;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One full visibility sweep (every player re-checked): the production
+ * VisibilityPass for each player, then spawning everything it queued, like
+ * NPCManager's tick minus the packets, which need a live server. Players step
+ * back and forth by a few blocks between sweeps so NPCs at the edges actually
+ * spawn and despawn. {@code parallelGridSweep} runs the passes through the
+ * production VisibilityExecutor. {@code linearSweep} is the old approach as a
+ * baseline: every NPC distance-checked for every player, with the per-player
+ * set of visible NPC uuids it probed and updated for each one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VisibilitySweepBenchmark {
+    private static final double SPAWN_DISTANCE = 48.0;
+    private static final double DESPAWN_DISTANCE = 56.0;
+    private static final double MAX_VIEW_DISTANCE = 128.0;
+    private static final double WORLD_SIZE = 2000.0;
+
+    @Param({"10", "100", "500"})
+    public int players;
+
+    @Param({"1000", "10000"})
+    public int npcCount;
+
+    private List<SpyNPC> npcs;
+    private List<Location> playerLocations;
+    private List<Integer> playerIndexes;
+    private UUID[] playerIds;
+    private VisibilityTracker tracker;
+    private SpawnQueue spawnQueue;
+    private VisibilityPass pass;
+    private VisibilityExecutor serial;
+    private VisibilityExecutor parallel;
+    // The old per-player visible set
+    private Map<UUID, Set<UUID>> visibleToPlayers;
+    private int step;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        World world = StandIns.world("world");
+        npcs = StandIns.npcs(world, npcCount, WORLD_SIZE, 1L);
+        playerLocations = StandIns.players(world, players, WORLD_SIZE, 2L);
+        playerIds = new UUID[players];
+        playerIndexes = new ArrayList<>(players);
+        for (int i = 0; i < players; i++) {
+            playerIds[i] = new UUID(0L, i);
+            playerIndexes.add(i);
+        }
+
+        NPCSpatialIndex spatialIndex = new NPCSpatialIndex();
+        tracker = new VisibilityTracker();
+        spawnQueue = new SpawnQueue();
+        pass = new VisibilityPass(spatialIndex, tracker, SPAWN_DISTANCE, DESPAWN_DISTANCE, MAX_VIEW_DISTANCE);
+        for (SpyNPC npc : npcs) {
+            spatialIndex.add(npc);
+            tracker.register(npc);
+            pass.trackViewDistance(npc);
+        }
+        serial = new VisibilityExecutor(1, Integer.MAX_VALUE);
+        // Threshold 1 so every sweep is sharded, whatever the player count
+        parallel = new VisibilityExecutor(0, 1);
+        visibleToPlayers = new ConcurrentHashMap<>();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        parallel.shutdown();
+    }
+
+    @Benchmark
+    public int gridSweep() {
+        return sweep(serial);
+    }
+
+    @Benchmark
+    public int parallelGridSweep() {
+        return sweep(parallel);
+    }
+
+    @Benchmark
+    public int linearSweep() {
+        double offset = nextOffset();
+        int changes = 0;
+        for (int i = 0; i < players; i++) {
+            Location playerLoc = playerLocations.get(i).add(offset, 0.0, 0.0);
+            Set<UUID> visibleNpcs = visibleToPlayers.computeIfAbsent(playerIds[i], k -> ConcurrentHashMap.newKeySet());
+            for (SpyNPC npc : npcs) {
+                boolean isVisible = visibleNpcs.contains(npc.getUuid());
+                Location loc = npc.getSnapshot().getLocation();
+                boolean shouldBeVisible = loc.getWorld().equals(playerLoc.getWorld())
+                        && playerLoc.distanceSquared(loc) < SPAWN_DISTANCE * SPAWN_DISTANCE;
+                if (shouldBeVisible && !isVisible) {
+                    visibleNpcs.add(npc.getUuid());
+                    changes++;
+                } else if (!shouldBeVisible && isVisible) {
+                    visibleNpcs.remove(npc.getUuid());
+                    changes++;
+                }
+            }
+        }
+        return changes;
+    }
+
+    private int sweep(VisibilityExecutor executor) {
+        double offset = nextOffset();
+        AtomicInteger changes = new AtomicInteger();
+        executor.run(playerIndexes, i -> changes.addAndGet(sweepPlayer(i, offset)));
+        return changes.get();
+    }
+
+    private int sweepPlayer(int i, double offset) {
+        UUID playerId = playerIds[i];
+        Location playerLoc = playerLocations.get(i).add(offset, 0.0, 0.0);
+        int[] changes = new int[1];
+        int evaluated = pass.run(playerId, playerLoc, new VisibilityPass.Changes() {
+            @Override
+            public void enterRange(SpyNPC npc, double distanceSquared) {
+                spawnQueue.enqueue(playerId, npc, distanceSquared);
+            }
+
+            @Override
+            public void outOfRange(SpyNPC npc) {
+                spawnQueue.cancel(playerId, npc.getUuid());
+            }
+
+            @Override
+            public void leaveRange(SpyNPC npc) {
+                changes[0]++;
+            }
+        });
+
+        // What the spawn queue drain does, without the spawns-per-tick limit
+        for (SpyNPC npc : spawnQueue.poll(playerId, 0)) {
+            if (tracker.isVisible(playerId, npc) || !pass.shouldBeVisible(playerLoc, npc, false)) continue;
+            tracker.setVisible(playerId, npc, true);
+            changes[0]++;
+        }
+        return changes[0] + evaluated;
+    }
+
+    private double nextOffset() {
+        return (step++ & 1) == 0 ? 8.0 : -8.0;
+    }
+}
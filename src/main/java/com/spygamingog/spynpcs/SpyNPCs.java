@@ -14,6 +14,7 @@ public class SpyNPCs extends JavaPlugin {
     @Override
     public void onEnable() {
         instance = this;
+        saveDefaultConfig();
         
         // Initialize managers
         this.npcManager = new NPCManager(this);
@@ -31,9 +32,9 @@ public class SpyNPCs extends JavaPlugin {
 
     @Override
     public void onDisable() {
-        // Save NPCs to persistence
+        // Every change was queued when it was made, shutdown() writes out what is still pending
         if (this.npcManager != null) {
-            this.npcManager.saveNPCs();
+            this.npcManager.shutdown();
         }
         getLogger().info("SpyNPCs has been disabled!");
     }
@@ -0,0 +1,30 @@
+package com.spygamingog.spynpcs.actions;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The compiled actions of one NPC in their configured order, split where they
+ * first need the main thread. The leading actions that are safe off the main
+ * thread run right away; everything from the first main thread action on runs in
+ * order by the interaction queue, even actions that wouldn't need it, so a
+ * message never overtakes the command configured before it.
+ *
+ * @param async      leading actions that are safe off the main thread
+ * @param mainThread the remaining actions, run by the interaction queue
+ */
+public record ActionPlan(List<CompiledAction> async, List<CompiledAction> mainThread) {
+    public static final ActionPlan EMPTY = new ActionPlan(Collections.emptyList(), Collections.emptyList());
+
+    public static ActionPlan of(List<CompiledAction> actions) {
+        int split = 0;
+        while (split < actions.size() && !actions.get(split).getType().isMainThread()) {
+            split++;
+        }
+        return new ActionPlan(List.copyOf(actions.subList(0, split)), List.copyOf(actions.subList(split, actions.size())));
+    }
+
+    public boolean isEmpty() {
+        return mainThread.isEmpty() && async.isEmpty();
+    }
+}
@@ -0,0 +1,80 @@
+package com.spygamingog.spynpcs.actions;
+
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * An action value split once into literal text and placeholders, so filling it
+ * in for a click is a single pass over the parts.
+ */
+public class ActionTemplate {
+    private final String[] literals;
+    private final Function<Player, String>[] resolvers;
+    private final String constant;
+    private final int literalLength;
+
+    // literals[i] is followed by resolvers[i], the last literal has no resolver
+    private ActionTemplate(String[] literals, Function<Player, String>[] resolvers) {
+        this.literals = literals;
+        this.resolvers = resolvers;
+        this.constant = resolvers.length == 0 ? literals[0] : null;
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    /**
+     * @param raw          the action value as configured
+     * @param placeholders placeholders to replace, unknown {@code %name%} stay as they are
+     * @param literalMapper applied to the literal text only, e.g. colour code translation
+     */
+    @SuppressWarnings("unchecked")
+    public static ActionTemplate compile(String raw, PlaceholderRegistry placeholders, UnaryOperator<String> literalMapper) {
+        List<String> literals = new ArrayList<>();
+        List<Function<Player, String>> resolvers = new ArrayList<>();
+
+        StringBuilder literal = new StringBuilder();
+        int index = 0;
+        while (index < raw.length()) {
+            int start = raw.indexOf('%', index);
+            int end = start < 0 ? -1 : raw.indexOf('%', start + 1);
+            if (end < 0) {
+                literal.append(raw, index, raw.length());
+                break;
+            }
+
+            Function<Player, String> resolver = placeholders.get(raw.substring(start + 1, end));
+            if (resolver == null) {
+                // Not a placeholder, keep the first '%' and look again from the second one
+                literal.append(raw, index, end);
+                index = end;
+                continue;
+            }
+
+            literal.append(raw, index, start);
+            literals.add(literalMapper.apply(literal.toString()));
+            resolvers.add(resolver);
+            literal.setLength(0);
+            index = end + 1;
+        }
+        literals.add(literalMapper.apply(literal.toString()));
+
+        return new ActionTemplate(literals.toArray(new String[0]), resolvers.toArray(new Function[0]));
+    }
+
+    public String fill(Player player) {
+        if (constant != null) return constant;
+
+        StringBuilder builder = new StringBuilder(literalLength + resolvers.length * 16);
+        for (int i = 0; i < resolvers.length; i++) {
+            builder.append(literals[i]).append(resolvers[i].apply(player));
+        }
+        return builder.append(literals[literals.length - 1]).toString();
+    }
+}
@@ -0,0 +1,72 @@
+package com.spygamingog.spynpcs.actions;
+
+import com.spygamingog.spynpcs.models.SpyNPC;
+import com.spygamingog.spynpcs.proxy.ServerConnector;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+
+import java.util.List;
+import java.util.function.UnaryOperator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An NPC action prepared for execution: placeholders are pre-split, colour codes
+ * pre-translated and the command to run is resolved when the action is added or
+ * loaded, not on every click.
+ */
+public class CompiledAction {
+    private final SpyNPC.ActionType type;
+    private final ActionTemplate template;
+    private final ServerConnector serverConnector;
+
+    private CompiledAction(SpyNPC.ActionType type, ActionTemplate template, ServerConnector serverConnector) {
+        this.type = type;
+        this.template = template;
+        this.serverConnector = serverConnector;
+    }
+
+    public static CompiledAction compile(SpyNPC.NPCAction action, PlaceholderRegistry placeholders, ServerConnector serverConnector) {
+        String value = action.getValue() != null ? action.getValue() : "";
+        ActionTemplate template = switch (action.getType()) {
+            case COMMAND, CONSOLE_COMMAND -> ActionTemplate.compile(stripSlash(value), placeholders, UnaryOperator.identity());
+            case MESSAGE -> ActionTemplate.compile(value, placeholders, literal -> literal.replace("&", "§"));
+            case SHOP -> ActionTemplate.compile("shop open %player% " + value, placeholders, UnaryOperator.identity());
+            case SERVER -> ActionTemplate.compile(value, placeholders, UnaryOperator.identity());
+        };
+        return new CompiledAction(action.getType(), template, serverConnector);
+    }
+
+    public SpyNPC.ActionType getType() {
+        return type;
+    }
+
+    public void execute(Player player) {
+        String value = template.fill(player);
+        switch (type) {
+            case COMMAND -> player.performCommand(value);
+            case CONSOLE_COMMAND, SHOP -> Bukkit.dispatchCommand(Bukkit.getConsoleSender(), value);
+            case MESSAGE -> player.sendMessage(value);
+            case SERVER -> serverConnector.connect(player, value);
+        }
+    }
+
+    /**
+     * Runs the actions in order, a failing action is logged and doesn't stop the rest.
+     */
+    public static void executeAll(Player player, List<CompiledAction> actions, Logger logger) {
+        if (!player.isOnline()) return;
+
+        for (CompiledAction action : actions) {
+            try {
+                action.execute(player);
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "Failed to run " + action.getType() + " action for " + player.getName(), e);
+            }
+        }
+    }
+
+    private static String stripSlash(String command) {
+        return command.startsWith("/") ? command.substring(1) : command;
+    }
+}
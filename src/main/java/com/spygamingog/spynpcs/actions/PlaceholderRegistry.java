@@ -0,0 +1,29 @@
+package com.spygamingog.spynpcs.actions;
+
+import org.bukkit.entity.Player;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Placeholders that can be used in action values, written as {@code %name%}.
+ * Only placeholders known when an action is compiled are replaced. Resolvers can
+ * be called off the main thread (see {@link ActionPlan}) and have to be thread-safe.
+ */
+public class PlaceholderRegistry {
+    private final Map<String, Function<Player, String>> placeholders = new ConcurrentHashMap<>();
+
+    public PlaceholderRegistry() {
+        register("player", Player::getName);
+        register("uuid", player -> player.getUniqueId().toString());
+    }
+
+    public void register(String name, Function<Player, String> resolver) {
+        placeholders.put(name.toLowerCase(), resolver);
+    }
+
+    public Function<Player, String> get(String name) {
+        return placeholders.get(name.toLowerCase());
+    }
+}
@@ -1,6 +1,8 @@
 package com.spygamingog.spynpcs.commands;
 
 import com.spygamingog.spynpcs.SpyNPCs;
+import com.spygamingog.spynpcs.metrics.Histogram;
+import com.spygamingog.spynpcs.metrics.NPCMetrics;
 import com.spygamingog.spynpcs.models.SpyNPC;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
@@ -18,6 +20,9 @@ import java.util.UUID;
 import java.util.stream.Collectors;
 
 public class NPCCommand implements CommandExecutor, TabCompleter {
+    // More than this is unreadable in the chat box anyway
+    private static final int MAX_NAME_COMPLETIONS = 100;
+
     @Override
     public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
         if (!(sender instanceof Player player)) {
@@ -35,6 +40,9 @@ public class NPCCommand implements CommandExecutor, TabCompleter {
         switch (subCommand) {
             case "action" -> handleAction(player, args);
             case "list" -> handleList(player);
+            case "viewdistance" -> handleViewDistance(player, args);
+            case "lookat" -> handleLookAt(player, args);
+            case "stats" -> handleStats(player);
             default -> sendHelp(player);
         }
 
@@ -47,6 +55,9 @@ public class NPCCommand implements CommandExecutor, TabCompleter {
         player.sendMessage(ChatColor.YELLOW + "/spynpc action <name> remove <index> " + ChatColor.GRAY + "- Remove an action");
         player.sendMessage(ChatColor.YELLOW + "/spynpc action <name> list " + ChatColor.GRAY + "- List NPC actions");
         player.sendMessage(ChatColor.YELLOW + "/spynpc list " + ChatColor.GRAY + "- List all NPCs");
+        player.sendMessage(ChatColor.YELLOW + "/spynpc viewdistance <name> <blocks|default> " + ChatColor.GRAY + "- Set how far away an NPC is visible");
+        player.sendMessage(ChatColor.YELLOW + "/spynpc lookat <name> <on|off> " + ChatColor.GRAY + "- Make an NPC face nearby players");
+        player.sendMessage(ChatColor.YELLOW + "/spynpc stats " + ChatColor.GRAY + "- Show performance metrics");
         player.sendMessage(ChatColor.GOLD + "Available Action Types: " + ChatColor.WHITE + "COMMAND, CONSOLE_COMMAND, MESSAGE, SHOP, SERVER");
     }
 
@@ -122,20 +133,106 @@ public class NPCCommand implements CommandExecutor, TabCompleter {
         }
     }
 
+    private void handleViewDistance(Player player, String[] args) {
+        if (args.length < 3) {
+            player.sendMessage(ChatColor.RED + "Usage: /spynpc viewdistance <name> <blocks|default>");
+            return;
+        }
+
+        String npcName = args[1];
+        SpyNPC npc = SpyNPCs.getInstance().getNpcManager().getNPCByName(npcName);
+
+        if (npc == null) {
+            player.sendMessage(ChatColor.RED + "NPC '" + npcName + "' not found.");
+            return;
+        }
+
+        if (args[2].equalsIgnoreCase("default")) {
+            SpyNPCs.getInstance().getNpcManager().setViewDistance(npc, null);
+            player.sendMessage(ChatColor.GREEN + "View distance of NPC " + npcName + " reset to default.");
+            return;
+        }
+
+        try {
+            double distance = Double.parseDouble(args[2]);
+            // parseDouble also takes "Infinity" and "NaN"
+            if (!Double.isFinite(distance) || distance <= 0) {
+                player.sendMessage(ChatColor.RED + "View distance must be a number greater than 0.");
+                return;
+            }
+            double applied = SpyNPCs.getInstance().getNpcManager().setViewDistance(npc, distance);
+            player.sendMessage(ChatColor.GREEN + "View distance of NPC " + npcName + " set to " + applied + " blocks."
+                    + (applied < distance ? ChatColor.GRAY + " (capped by visibility.max-view-distance)" : ""));
+        } catch (NumberFormatException e) {
+            player.sendMessage(ChatColor.RED + "Invalid distance '" + args[2] + "'.");
+        }
+    }
+
+    private void handleLookAt(Player player, String[] args) {
+        if (args.length < 3) {
+            player.sendMessage(ChatColor.RED + "Usage: /spynpc lookat <name> <on|off>");
+            return;
+        }
+
+        String npcName = args[1];
+        SpyNPC npc = SpyNPCs.getInstance().getNpcManager().getNPCByName(npcName);
+
+        if (npc == null) {
+            player.sendMessage(ChatColor.RED + "NPC '" + npcName + "' not found.");
+            return;
+        }
+
+        boolean enabled;
+        if (args[2].equalsIgnoreCase("on")) {
+            enabled = true;
+        } else if (args[2].equalsIgnoreCase("off")) {
+            enabled = false;
+        } else {
+            player.sendMessage(ChatColor.RED + "Usage: /spynpc lookat <name> <on|off>");
+            return;
+        }
+
+        SpyNPCs.getInstance().getNpcManager().setLookAt(npc, enabled);
+        player.sendMessage(ChatColor.GREEN + "NPC " + npcName + (enabled ? " now faces nearby players." : " no longer faces nearby players."));
+    }
+
+    private void handleStats(Player player) {
+        NPCMetrics metrics = SpyNPCs.getInstance().getNpcManager().getMetrics();
+        player.sendMessage(ChatColor.GOLD + "=== SpyNPCs Stats ===");
+
+        for (Histogram histogram : metrics.getHistograms()) {
+            String unit = histogram.getUnit().isEmpty() ? "" : " " + histogram.getUnit();
+            player.sendMessage(ChatColor.YELLOW + histogram.getHelp() + ": " + ChatColor.WHITE
+                    + "n=" + histogram.getCount()
+                    + ", avg " + String.format("%.1f", histogram.getMean()) + unit
+                    + ", p50 <" + histogram.getPercentile(0.5)
+                    + ", p99 <" + histogram.getPercentile(0.99)
+                    + ", max " + histogram.getMax() + unit);
+        }
+
+        player.sendMessage(ChatColor.YELLOW + "Async click actions executed: " + ChatColor.WHITE + metrics.getAsyncInteractionsExecuted().sum());
+        for (NPCMetrics.Value value : metrics.getValues().values()) {
+            player.sendMessage(ChatColor.YELLOW + value.help() + ": " + ChatColor.WHITE + value.supplier().getAsLong());
+        }
+
+        String packets = metrics.getPacketCounts().entrySet().stream()
+                .map(entry -> entry.getKey() + "=" + entry.getValue())
+                .collect(Collectors.joining(", "));
+        player.sendMessage(ChatColor.YELLOW + "Packets sent: " + ChatColor.WHITE + (packets.isEmpty() ? "none" : packets));
+    }
+
     @Override
     public List<String> onTabComplete(CommandSender sender, Command command, String alias, String[] args) {
         if (args.length == 1) {
-            return Arrays.asList("action", "list").stream()
+            return Arrays.asList("action", "list", "viewdistance", "lookat", "stats").stream()
                     .filter(s -> s.startsWith(args[0].toLowerCase()))
                     .collect(Collectors.toList());
         }
 
         if (args.length == 2) {
-            if (args[0].equalsIgnoreCase("action")) {
-                return SpyNPCs.getInstance().getNpcManager().getAllNPCs().stream()
-                        .map(npc -> ChatColor.stripColor(npc.getName()))
-                        .filter(name -> name.toLowerCase().startsWith(args[1].toLowerCase()))
-                        .collect(Collectors.toList());
+            if (args[0].equalsIgnoreCase("action") || args[0].equalsIgnoreCase("viewdistance")
+                    || args[0].equalsIgnoreCase("lookat")) {
+                return SpyNPCs.getInstance().getNpcManager().completeNPCNames(args[1], MAX_NAME_COMPLETIONS);
             }
         }
 
@@ -145,6 +242,11 @@ public class NPCCommand implements CommandExecutor, TabCompleter {
                         .filter(s -> s.startsWith(args[2].toLowerCase()))
                         .collect(Collectors.toList());
             }
+            if (args[0].equalsIgnoreCase("lookat")) {
+                return Arrays.asList("on", "off").stream()
+                        .filter(s -> s.startsWith(args[2].toLowerCase()))
+                        .collect(Collectors.toList());
+            }
         }
 
         if (args.length == 4 && args[0].equalsIgnoreCase("action") && args[2].equalsIgnoreCase("add")) {
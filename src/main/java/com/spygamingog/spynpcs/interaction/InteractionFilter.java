@@ -0,0 +1,145 @@
+package com.spygamingog.spynpcs.interaction;
+
+import com.comphenix.protocol.wrappers.EnumWrappers;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decides on the packet thread whether a click on an NPC should run its actions.
+ * <p>
+ * A right click arrives as INTERACT_AT + INTERACT for each hand, except on types
+ * like armor stands where the client only sends INTERACT_AT. So main hand
+ * INTERACT and INTERACT_AT (and optionally ATTACK) are kept, and the per-NPC
+ * cooldown, never shorter than 50 ms, drops the second packet of a pair. On top
+ * of that clicks are limited per player, per player and NPC, and server-wide
+ * with a token bucket, so autoclickers can't flood the main thread with command
+ * dispatches.
+ */
+public class InteractionFilter {
+    // The INTERACT_AT + INTERACT of one click arrive back to back
+    private static final long DUPLICATE_WINDOW_MILLIS = 50L;
+
+    private final boolean acceptAttack;
+    private final long playerCooldownNanos;
+    private final long npcCooldownNanos;
+    private final TokenBucket globalBucket;
+    private final Map<UUID, PlayerClicks> clicks = new ConcurrentHashMap<>();
+
+    private final LongAdder received = new LongAdder();
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejectedType = new LongAdder();
+    private final LongAdder rejectedCooldown = new LongAdder();
+    private final LongAdder rejectedRateLimit = new LongAdder();
+
+    public InteractionFilter(boolean acceptAttack, long playerCooldownMillis, long npcCooldownMillis, int globalPerSecond) {
+        this.acceptAttack = acceptAttack;
+        this.playerCooldownNanos = Math.max(0L, playerCooldownMillis) * 1_000_000L;
+        this.npcCooldownNanos = Math.max(DUPLICATE_WINDOW_MILLIS, npcCooldownMillis) * 1_000_000L;
+        this.globalBucket = globalPerSecond > 0 ? new TokenBucket(globalPerSecond) : null;
+    }
+
+    /**
+     * @param action the use action, null if it couldn't be read (treated as a click)
+     * @param hand   the hand, null for attacks or if it couldn't be read
+     */
+    public boolean accept(UUID playerUuid, int entityId, EnumWrappers.EntityUseAction action, EnumWrappers.Hand hand) {
+        received.increment();
+
+        if ((action == EnumWrappers.EntityUseAction.ATTACK && !acceptAttack)
+                || hand == EnumWrappers.Hand.OFF_HAND) {
+            rejectedType.increment();
+            return false;
+        }
+
+        long now = System.nanoTime();
+        PlayerClicks playerClicks = clicks.computeIfAbsent(playerUuid, k -> new PlayerClicks());
+        if (!playerClicks.tryClick(entityId, now, playerCooldownNanos, npcCooldownNanos)) {
+            rejectedCooldown.increment();
+            return false;
+        }
+
+        if (globalBucket != null && !globalBucket.tryAcquire(now)) {
+            rejectedRateLimit.increment();
+            return false;
+        }
+
+        accepted.increment();
+        return true;
+    }
+
+    public void forget(UUID playerUuid) {
+        clicks.remove(playerUuid);
+    }
+
+    public long getReceived() {
+        return received.sum();
+    }
+
+    public long getAccepted() {
+        return accepted.sum();
+    }
+
+    public long getRejectedType() {
+        return rejectedType.sum();
+    }
+
+    public long getRejectedCooldown() {
+        return rejectedCooldown.sum();
+    }
+
+    public long getRejectedRateLimit() {
+        return rejectedRateLimit.sum();
+    }
+
+    private static class PlayerClicks {
+        private long lastClick = Long.MIN_VALUE;
+        private final Map<Integer, Long> lastNpcClick = new HashMap<>();
+
+        synchronized boolean tryClick(int entityId, long now, long playerCooldown, long npcCooldown) {
+            if (lastClick != Long.MIN_VALUE && now - lastClick < playerCooldown) return false;
+
+            Long lastOnNpc = lastNpcClick.get(entityId);
+            if (lastOnNpc != null && now - lastOnNpc < npcCooldown) return false;
+
+            lastClick = now;
+            if (npcCooldown > 0) {
+                if (lastNpcClick.size() >= 32) {
+                    // Only entries still on cooldown matter
+                    Iterator<Long> iterator = lastNpcClick.values().iterator();
+                    while (iterator.hasNext()) {
+                        if (now - iterator.next() >= npcCooldown) iterator.remove();
+                    }
+                }
+                lastNpcClick.put(entityId, now);
+            }
+            return true;
+        }
+    }
+
+    private static class TokenBucket {
+        private final double capacity;
+        private final double tokensPerNano;
+        private double tokens;
+        private long lastRefill;
+
+        TokenBucket(int perSecond) {
+            this.capacity = perSecond;
+            this.tokensPerNano = perSecond / 1_000_000_000.0;
+            this.tokens = perSecond;
+            this.lastRefill = System.nanoTime();
+        }
+
+        synchronized boolean tryAcquire(long now) {
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+            lastRefill = now;
+            if (tokens < 1.0) return false;
+            tokens -= 1.0;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.spygamingog.spynpcs.interaction;
+
+import com.spygamingog.spynpcs.actions.CompiledAction;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hands accepted clicks from the packet threads to the main thread. Clicks are
+ * pushed onto a lock-free queue and one task per tick runs them until the tick's
+ * time budget is used up; the rest waits for the next tick, in order.
+ */
+public class InteractionQueue {
+    private final Plugin plugin;
+    private final long budgetNanos;
+    private final Queue<Interaction> queue = new ConcurrentLinkedQueue<>();
+    // ConcurrentLinkedQueue#size() walks the whole queue
+    private final AtomicInteger depth = new AtomicInteger();
+    private final AtomicInteger maxDepth = new AtomicInteger();
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder budgetOverruns = new LongAdder();
+
+    private record Interaction(Player player, List<CompiledAction> actions) {}
+
+    public InteractionQueue(Plugin plugin, double budgetMillis) {
+        this.plugin = plugin;
+        this.budgetNanos = (long) (Math.max(0.0, budgetMillis) * 1_000_000L);
+    }
+
+    public void start() {
+        Bukkit.getScheduler().runTaskTimer(plugin, this::drain, 1L, 1L);
+    }
+
+    /**
+     * Safe to call from any thread.
+     */
+    public void submit(Player player, List<CompiledAction> actions) {
+        queue.offer(new Interaction(player, actions));
+        maxDepth.accumulateAndGet(depth.incrementAndGet(), Math::max);
+    }
+
+    private void drain() {
+        if (queue.isEmpty()) return;
+
+        long deadline = System.nanoTime() + budgetNanos;
+        do {
+            // At least one interaction per tick, even with a zero budget
+            Interaction interaction = queue.poll();
+            if (interaction == null) return;
+            depth.decrementAndGet();
+            run(interaction);
+        } while (System.nanoTime() < deadline);
+
+        if (!queue.isEmpty()) {
+            budgetOverruns.increment();
+        }
+    }
+
+    private void run(Interaction interaction) {
+        CompiledAction.executeAll(interaction.player(), interaction.actions(), plugin.getLogger());
+        executed.increment();
+    }
+
+    public int getDepth() {
+        return depth.get();
+    }
+
+    public int getMaxDepth() {
+        return maxDepth.get();
+    }
+
+    public long getExecuted() {
+        return executed.sum();
+    }
+
+    /**
+     * Ticks that ran out of budget with interactions still waiting.
+     */
+    public long getBudgetOverruns() {
+        return budgetOverruns.sum();
+    }
+}
@@ -6,60 +6,222 @@ import com.comphenix.protocol.events.PacketAdapter;
 import com.comphenix.protocol.events.PacketContainer;
 import com.comphenix.protocol.events.PacketEvent;
 import com.comphenix.protocol.wrappers.*;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.spygamingog.spynpcs.SpyNPCs;
+import com.spygamingog.spynpcs.actions.ActionPlan;
+import com.spygamingog.spynpcs.actions.CompiledAction;
+import com.spygamingog.spynpcs.actions.PlaceholderRegistry;
+import com.spygamingog.spynpcs.interaction.InteractionFilter;
+import com.spygamingog.spynpcs.interaction.InteractionQueue;
+import com.spygamingog.spynpcs.metrics.NPCMetrics;
+import com.spygamingog.spynpcs.metrics.PrometheusFileExporter;
 import com.spygamingog.spynpcs.models.SpyNPC;
+import com.spygamingog.spynpcs.packets.LookAtTracker;
+import com.spygamingog.spynpcs.packets.NPCPacketFactory;
+import com.spygamingog.spynpcs.packets.PacketBatch;
+import com.spygamingog.spynpcs.packets.TabRemovalScheduler;
+import com.spygamingog.spynpcs.packets.TeamTracker;
+import com.spygamingog.spynpcs.proxy.BungeeProxyChannel;
+import com.spygamingog.spynpcs.proxy.ServerConnector;
+import com.spygamingog.spynpcs.storage.BinaryNPCStorage;
+import com.spygamingog.spynpcs.storage.JsonNPCStorage;
+import com.spygamingog.spynpcs.storage.NPCData;
+import com.spygamingog.spynpcs.storage.NPCStorage;
+import com.spygamingog.spynpcs.storage.PersistenceQueue;
+import com.spygamingog.spynpcs.utils.IntObjectMap;
+import com.spygamingog.spynpcs.utils.NameIndex;
+import com.spygamingog.spynpcs.visibility.NPCSpatialIndex;
+import com.spygamingog.spynpcs.visibility.SpawnQueue;
+import com.spygamingog.spynpcs.visibility.VisibilityExecutor;
+import com.spygamingog.spynpcs.visibility.VisibilityPass;
+import com.spygamingog.spynpcs.visibility.VisibilityTracker;
+import lombok.Getter;
 import org.bukkit.Bukkit;
-import org.bukkit.ChatColor;
 import org.bukkit.Location;
 import org.bukkit.World;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.entity.Entity;
 import org.bukkit.entity.EntityType;
 import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
-import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerMoveEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.player.PlayerRespawnEvent;
+import org.bukkit.event.player.PlayerTeleportEvent;
+import org.bukkit.event.vehicle.VehicleMoveEvent;
+import org.bukkit.event.world.WorldLoadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
 
 public class NPCManager implements Listener {
     private final SpyNPCs plugin;
     private final Map<UUID, SpyNPC> npcs = new ConcurrentHashMap<>();
-    private final Map<Integer, UUID> entityIdToUuid = new ConcurrentHashMap<>();
-    private final Map<UUID, Set<UUID>> visibleToPlayers = new ConcurrentHashMap<>();
-    private static final boolean MANNEQUIN_SUPPORTED;
-    private final Gson gson;
-    private final File npcsFolder;
-
-    static {
-        boolean supported = false;
-        try {
-            EntityType.valueOf("MANNEQUIN");
-            supported = true;
-        } catch (IllegalArgumentException ignored) {}
-        MANNEQUIN_SUPPORTED = supported;
-    }
+    // Read on Netty threads for every USE_ENTITY packet, see IntObjectMap
+    private final IntObjectMap<SpyNPC> npcsByEntityId = new IntObjectMap<>();
+    private final VisibilityTracker visibility = new VisibilityTracker();
+    private final NameIndex names = new NameIndex();
+    private final NPCSpatialIndex spatialIndex = new NPCSpatialIndex();
+    @Getter
+    private final InteractionFilter interactionFilter;
+    @Getter
+    private final InteractionQueue interactionQueue;
+    @Getter
+    private final ServerConnector serverConnector;
+    @Getter
+    private final NPCMetrics metrics = new NPCMetrics();
+    private final PlaceholderRegistry placeholders = new PlaceholderRegistry();
+    private final Map<UUID, ActionPlan> compiledActions = new ConcurrentHashMap<>();
+    private final ExecutorService asyncActions = Executors.newVirtualThreadPerTaskExecutor();
+    // NPCs of worlds that aren't loaded (yet), by world name
+    private final Map<String, Map<UUID, NPCData>> dormantNpcs = new ConcurrentHashMap<>();
+    @Getter
+    private final SpawnQueue spawnQueue = new SpawnQueue();
+    private final VisibilityPass visibilityPass;
+    private final Set<UUID> dirtyPlayers = ConcurrentHashMap.newKeySet();
+    private final boolean eventDriven;
+    private final int updateCellSize;
+    private final long reconcileInterval;
+    private final boolean bundlePackets;
+    private final int spawnsPerTick;
+    private long visibilityTicks;
+    private final AtomicBoolean visibilityRunning = new AtomicBoolean();
+    private BukkitTask visibilityTask;
+    private PacketAdapter interactListener;
+    private final VisibilityExecutor visibilityExecutor;
+    private final NPCPacketFactory packetFactory;
+    private final TeamTracker teamTracker = new TeamTracker();
+    private final TabRemovalScheduler tabRemovals;
+    private final LookAtTracker lookAt;
+    // Visibility ticks between look-at passes, 0 = look-at is off
+    private final long lookAtInterval;
+    private final NPCStorage storage;
+    private final PersistenceQueue persistence;
 
     public NPCManager(SpyNPCs plugin) {
         this.plugin = plugin;
-        this.gson = new GsonBuilder()
-                .setPrettyPrinting()
-                .disableHtmlEscaping()
-                .create();
-        this.npcsFolder = new File(plugin.getDataFolder(), "npcs");
-        if (!npcsFolder.exists()) {
-            npcsFolder.mkdirs();
-        }
+        this.packetFactory = new NPCPacketFactory(plugin);
+        this.eventDriven = plugin.getConfig().getBoolean("visibility.event-driven", true);
+        this.updateCellSize = Math.max(1, plugin.getConfig().getInt("visibility.update-cell-size", 4));
+        this.reconcileInterval = Math.max(20L, plugin.getConfig().getLong("visibility.reconcile-interval", 100L));
+        this.visibilityPass = new VisibilityPass(spatialIndex, visibility,
+                plugin.getConfig().getDouble("visibility.spawn-distance", 48.0),
+                plugin.getConfig().getDouble("visibility.despawn-distance", 56.0),
+                plugin.getConfig().getDouble("visibility.max-view-distance", 128.0));
+        this.bundlePackets = plugin.getConfig().getBoolean("packets.bundle", true);
+        this.spawnsPerTick = plugin.getConfig().getInt("spawn-queue.spawns-per-tick", 10);
+        this.visibilityExecutor = new VisibilityExecutor(plugin.getConfig().getInt("visibility.parallelism", 0),
+                plugin.getConfig().getInt("visibility.parallel-threshold", 64));
+        this.tabRemovals = new TabRemovalScheduler(plugin, plugin.getConfig().getLong("packets.tab-removal-delay", 20L), metrics);
+        this.lookAtInterval = Math.max(0L, plugin.getConfig().getLong("look-at.interval", 2L));
+        this.lookAt = new LookAtTracker(visibility, packetFactory, metrics, bundlePackets,
+                Math.max(0.0, plugin.getConfig().getDouble("look-at.radius", 8.0)),
+                plugin.getConfig().getInt("look-at.updates-per-pass", 200));
+        this.interactionFilter = new InteractionFilter(
+                plugin.getConfig().getBoolean("interaction.accept-attack", true),
+                plugin.getConfig().getLong("interaction.player-cooldown", 100L),
+                plugin.getConfig().getLong("interaction.npc-cooldown", 500L),
+                plugin.getConfig().getInt("interaction.global-rate", 200));
+        this.interactionQueue = new InteractionQueue(plugin, plugin.getConfig().getDouble("interaction.tick-budget", 2.0));
+        this.serverConnector = createServerConnector();
+        this.storage = createStorage();
+        this.persistence = new PersistenceQueue(storage, plugin.getLogger(),
+                plugin.getConfig().getLong("storage.save-delay", 500L), metrics.getStorageFlush());
+        registerMetrics();
         setupProtocolListener();
         startVisibilityTask();
+        interactionQueue.start();
+        tabRemovals.start();
         Bukkit.getPluginManager().registerEvents(this, plugin);
     }
 
+    private ServerConnector createServerConnector() {
+        Map<String, ServerConnector.TransferTarget> transfers = new HashMap<>();
+        ConfigurationSection section = plugin.getConfig().getConfigurationSection("proxy.transfers");
+        if (section != null) {
+            for (String server : section.getKeys(false)) {
+                String address = section.getString(server, "");
+                int colon = address.lastIndexOf(':');
+                try {
+                    String host = colon < 0 ? address : address.substring(0, colon);
+                    int port = colon < 0 ? 25565 : Integer.parseInt(address.substring(colon + 1));
+                    transfers.put(server, new ServerConnector.TransferTarget(host, port));
+                } catch (NumberFormatException e) {
+                    plugin.getLogger().warning("Invalid transfer address '" + address + "' for server " + server);
+                }
+            }
+        }
+
+        ServerConnector connector = new ServerConnector(plugin.getLogger(), transfers);
+        connector.setChannel(new BungeeProxyChannel(plugin, connector));
+
+        // Keep the known server list warm so clicks never wait on the proxy
+        long refreshTicks = plugin.getConfig().getLong("proxy.refresh-interval", 30L) * 20L;
+        if (refreshTicks > 0) {
+            Bukkit.getScheduler().runTaskTimerAsynchronously(plugin,
+                    () -> connector.refresh(Bukkit.getOnlinePlayers()), 20L, refreshTicks);
+        }
+        return connector;
+    }
+
+    private void registerMetrics() {
+        metrics.registerGauge("spynpcs_npcs_loaded", "NPCs in loaded worlds", npcs::size);
+        metrics.registerGauge("spynpcs_npcs_waiting", "NPCs waiting for their world to load",
+                () -> dormantNpcs.values().stream().mapToLong(Map::size).sum());
+        metrics.registerGauge("spynpcs_spawn_queue_depth", "NPCs waiting in the spawn queue", spawnQueue::getDepth);
+        metrics.registerGauge("spynpcs_spawn_queue_last_drain_millis", "Time the last fully drained spawn queue waited", spawnQueue::getLastDrainMillis);
+        metrics.registerGauge("spynpcs_spawn_queue_max_drain_millis", "Longest time a spawn queue took to drain", spawnQueue::getMaxDrainMillis);
+        metrics.registerCounter("spynpcs_interactions_received_total", "Clicks on NPCs received", interactionFilter::getReceived);
+        metrics.registerCounter("spynpcs_interactions_accepted_total", "Clicks on NPCs that passed the filter", interactionFilter::getAccepted);
+        metrics.registerCounter("spynpcs_interactions_rejected_type_total", "Clicks dropped for their type or hand", interactionFilter::getRejectedType);
+        metrics.registerCounter("spynpcs_interactions_rejected_cooldown_total", "Clicks dropped by a cooldown", interactionFilter::getRejectedCooldown);
+        metrics.registerCounter("spynpcs_interactions_rejected_rate_total", "Clicks dropped by the global rate limit", interactionFilter::getRejectedRateLimit);
+        metrics.registerCounter("spynpcs_interactions_executed_total", "Clicks whose actions ran on the main thread", interactionQueue::getExecuted);
+        metrics.registerGauge("spynpcs_interaction_queue_depth", "Clicks waiting for the main thread", interactionQueue::getDepth);
+        metrics.registerGauge("spynpcs_interaction_queue_max_depth", "Most clicks ever waiting for the main thread", interactionQueue::getMaxDepth);
+        metrics.registerCounter("spynpcs_interaction_queue_overruns_total", "Ticks that ran out of click budget", interactionQueue::getBudgetOverruns);
+        metrics.registerGauge("spynpcs_look_at_npcs", "NPCs turning to face nearby players", lookAt::getTrackedCount);
+        metrics.registerCounter("spynpcs_look_at_updates_total", "Look-at rotations sent, a head and a body rotation packet each", lookAt::getUpdatesSent);
+        metrics.registerCounter("spynpcs_look_at_unchanged_total", "Look-at checks where the rotation the player sees didn't change", lookAt::getUnchanged);
+        metrics.registerCounter("spynpcs_look_at_deferred_total", "NPCs whose look-at update waited for the next pass (budget used up)", lookAt::getDeferred);
+        metrics.registerGauge("spynpcs_storage_pending", "NPC saves waiting to be written", persistence::getPendingCount);
+        metrics.registerGauge("spynpcs_proxy_known_servers", "Servers reported by the proxy", () -> serverConnector.getKnownServers().size());
+
+        String file = plugin.getConfig().getString("metrics.prometheus-file", "");
+        if (file != null && !file.isEmpty()) {
+            new PrometheusFileExporter(plugin, metrics, new File(plugin.getDataFolder(), file),
+                    plugin.getConfig().getLong("metrics.prometheus-interval", 15L)).start();
+        }
+    }
+
+    private NPCStorage createStorage() {
+        JsonNPCStorage json = new JsonNPCStorage(new File(plugin.getDataFolder(), "npcs"), plugin.getLogger());
+        if (!plugin.getConfig().getString("storage.type", "json").equalsIgnoreCase("binary")) {
+            return json;
+        }
+
+        BinaryNPCStorage binary = new BinaryNPCStorage(new File(plugin.getDataFolder(), "npcs.bin"), plugin.getLogger());
+        if (!binary.exists()) {
+            // First start on the binary store, bring over the existing JSON files once
+            int migrated = binary.migrateFrom(json, plugin.getConfig().getInt("storage.load-threads", 0));
+            if (migrated > 0) {
+                plugin.getLogger().info("Migrated " + migrated + " NPCs from npcs/ to npcs.bin. The JSON files are kept as a backup and no longer updated.");
+            }
+        }
+        return binary;
+    }
+
     public void saveNPCs() {
         if (npcs.isEmpty()) return;
         
@@ -68,522 +230,567 @@ public class NPCManager implements Listener {
         }
     }
 
+    /**
+     * Stops running async actions and writes out everything still queued, waiting at most storage.shutdown-timeout seconds.
+     */
+    public void shutdown() {
+        // Stop what feeds the executors first, or clicks and visibility ticks arriving
+        // during disable would be rejected by them
+        ProtocolLibrary.getProtocolManager().removePacketListener(interactListener);
+        visibilityTask.cancel();
+        awaitVisibilityTick(5_000L);
+
+        asyncActions.shutdown();
+        visibilityExecutor.shutdown();
+        persistence.shutdown(plugin.getConfig().getLong("storage.shutdown-timeout", 10L) * 1000L);
+    }
+
+    /**
+     * Waits for a visibility tick that is still running and keeps new ones from starting.
+     */
+    private void awaitVisibilityTick(long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!visibilityRunning.compareAndSet(false, true)) {
+            if (System.currentTimeMillis() > deadline) {
+                plugin.getLogger().warning("Visibility tick still running after " + timeoutMillis + "ms, shutting down anyway.");
+                return;
+            }
+            try {
+                Thread.sleep(1L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
     public void loadNPCs() {
-        if (!npcsFolder.exists()) return;
-        
-        File[] files = npcsFolder.listFiles((dir, name) -> name.endsWith(".json"));
-        if (files == null) return;
-        
-        for (File file : files) {
-            try (FileReader reader = new FileReader(file)) {
-                Map<String, Object> data = gson.fromJson(reader, Map.class);
-                if (data == null) {
-                    plugin.getLogger().warning("Skipping empty NPC file: " + file.getName());
-                    continue;
-                }
-                
-                Object uuidObj = data.get("uuid");
-                if (uuidObj == null) {
-                    plugin.getLogger().warning("Skipping invalid NPC file (missing UUID): " + file.getName());
-                    continue;
-                }
-                UUID uuid = UUID.fromString((String) uuidObj);
-                Object entityIdObj = data.get("entityId");
-                int entityId = entityIdObj instanceof Double ? ((Double) entityIdObj).intValue() : (entityIdObj instanceof Integer ? (Integer) entityIdObj : 0);
-                
-                String name = (String) data.get("name");
-                String localName = (String) data.get("localName");
-                
-                Object typeObj = data.get("type");
-                if (typeObj == null) {
-                    plugin.getLogger().warning("Skipping invalid NPC file (missing type): " + file.getName());
-                    continue;
-                }
-                EntityType type = EntityType.valueOf((String) typeObj);
-                
-                Map<String, Object> locData = (Map<String, Object>) data.get("location");
-                if (locData == null) {
-                    plugin.getLogger().warning("Skipping invalid NPC file (missing location): " + file.getName());
-                    continue;
-                }
-                
-                String worldName = (String) locData.get("world");
-                if (worldName == null) {
-                    plugin.getLogger().warning("Skipping invalid NPC file (missing world): " + file.getName());
-                    continue;
-                }
-                
-                World world = Bukkit.getWorld(worldName);
-                if (world == null) {
-                    // For BedWars/SpyCore, worlds might be loaded later or hibernating.
-                    // But here we need the world to create the Location object.
-                    plugin.getLogger().warning("World '" + worldName + "' not found for NPC in " + file.getName());
-                    continue;
-                }
-                
-                double x = getDouble(locData, "x");
-                double y = getDouble(locData, "y");
-                double z = getDouble(locData, "z");
-                float yaw = (float) getDouble(locData, "yaw");
-                float pitch = (float) getDouble(locData, "pitch");
-                
-                Location location = new Location(world, x, y, z, yaw, pitch);
-                
-                List<SpyNPC.NPCAction> actions = new ArrayList<>();
-                List<Map<String, String>> actionData = (List<Map<String, String>>) data.get("actions");
-                if (actionData != null) {
-                    for (Map<String, String> a : actionData) {
-                        String typeStr = a.get("type");
-                        if (typeStr == null) continue;
-                        
-                        actions.add(SpyNPC.NPCAction.builder()
-                                .type(SpyNPC.ActionType.valueOf(typeStr))
-                                .value(a.getOrDefault("value", ""))
-                                .build());
-                    }
-                }
-                
-                SpyNPC npc = SpyNPC.builder()
-                        .uuid(uuid)
-                        .entityId(entityId)
-                        .name(name)
-                        .localName(localName)
-                        .type(type)
-                        .location(location)
-                        .skinName((String) data.get("skinName"))
-                        .skinValue((String) data.get("skinValue"))
-                        .skinSignature((String) data.get("skinSignature"))
-                        .actions(actions)
-                        .build();
-                
-                npcs.put(uuid, npc);
-                entityIdToUuid.put(entityId, uuid);
+        NPCStorage.LoadResult result = storage.load(plugin.getConfig().getInt("storage.load-threads", 0));
+
+        // Registration is the only part that runs on the main thread
+        long start = System.nanoTime();
+        int waiting = 0;
+        Map<String, List<NPCData>> byWorld = new HashMap<>();
+        for (NPCData data : result.npcs()) {
+            byWorld.computeIfAbsent(data.getLocation().getWorld(), k -> new ArrayList<>()).add(data);
+        }
+        for (Map.Entry<String, List<NPCData>> entry : byWorld.entrySet()) {
+            World world = Bukkit.getWorld(entry.getKey());
+            if (world == null) {
+                // For BedWars/SpyCore, worlds might be loaded later or hibernating.
+                // Kept as plain data until the world loads.
+                dormantNpcs.computeIfAbsent(entry.getKey(), k -> new ConcurrentHashMap<>())
+                        .putAll(toDataMap(entry.getValue()));
+                waiting += entry.getValue().size();
+            } else {
+                materialize(world, entry.getValue());
+            }
+        }
+        long registerMillis = (System.nanoTime() - start) / 1_000_000L;
+        metrics.getStorageLoad().record(result.indexMillis() + result.parseMillis() + registerMillis);
+
+        plugin.getLogger().info("Loaded " + npcs.size() + " NPCs (index " + result.indexMillis() + "ms, parse "
+                + result.parseMillis() + "ms on " + result.threads() + " threads, register " + registerMillis + "ms), "
+                + waiting + " waiting for their world to load.");
+    }
+
+    private Map<UUID, NPCData> toDataMap(Collection<NPCData> data) {
+        Map<UUID, NPCData> map = new HashMap<>();
+        for (NPCData npcData : data) {
+            map.put(UUID.fromString(npcData.getUuid()), npcData);
+        }
+        return map;
+    }
+
+    /**
+     * Turns stored NPCs of a loaded world into live NPCs and registers them.
+     */
+    private void materialize(World world, Collection<NPCData> data) {
+        // Published in one copy at the end instead of one copy per NPC
+        Map<Integer, SpyNPC> loadedByEntityId = new HashMap<>();
+        for (NPCData npcData : data) {
+            try {
+                SpyNPC npc = toNPC(npcData, world);
+                compileActions(npc);
+                npcs.put(npc.getUuid(), npc);
+                visibility.register(npc);
+                names.put(npc.getUuid(), npc.getName());
+                loadedByEntityId.put(npc.getEntityId(), npc);
+                spatialIndex.add(npc);
+                visibilityPass.trackViewDistance(npc);
+                lookAt.track(npc);
             } catch (Exception e) {
-                plugin.getLogger().severe("Could not load NPC from " + file.getName() + ": " + e.getMessage());
+                plugin.getLogger().severe("Could not load NPC " + npcData.getUuid() + ": " + e.getMessage());
             }
         }
-        plugin.getLogger().info("Loaded " + npcs.size() + " NPCs.");
+        npcsByEntityId.putAll(loadedByEntityId);
     }
 
-    private double getDouble(Map<String, Object> map, String key) {
-        Object obj = map.get(key);
-        if (obj instanceof Double) return (Double) obj;
-        if (obj instanceof Integer) return (Integer) obj;
-        return 0.0;
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldLoad(WorldLoadEvent event) {
+        Map<UUID, NPCData> waiting = dormantNpcs.remove(event.getWorld().getName());
+        if (waiting == null || waiting.isEmpty()) return;
+
+        materialize(event.getWorld(), waiting.values());
+        plugin.getLogger().info("Loaded " + waiting.size() + " NPCs for world " + event.getWorld().getName() + ".");
     }
 
-    @EventHandler
-    public void onQuit(PlayerQuitEvent event) {
-        visibleToPlayers.remove(event.getPlayer().getUniqueId());
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onWorldUnload(WorldUnloadEvent event) {
+        String worldName = event.getWorld().getName();
+        List<SpyNPC> inWorld = new ArrayList<>(spatialIndex.getNPCs(worldName));
+        if (inWorld.isEmpty()) return;
+
+        // Back to plain data, nothing scans or looks them up until the world is back
+        Map<UUID, NPCData> evicted = new HashMap<>();
+        for (SpyNPC npc : inWorld) {
+            evicted.put(npc.getUuid(), NPCData.from(npc));
+            unregister(npc);
+            spawnQueue.cancelAll(npc.getUuid());
+        }
+        dormantNpcs.computeIfAbsent(worldName, k -> new ConcurrentHashMap<>()).putAll(evicted);
     }
 
-    private void startVisibilityTask() {
-        Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, () -> {
-            for (Player player : Bukkit.getOnlinePlayers()) {
-                updateVisibility(player);
-            }
-        }, 20L, 20L);
+    private void unregister(SpyNPC npc) {
+        npcs.remove(npc.getUuid());
+        visibility.unregister(npc);
+        names.remove(npc.getUuid());
+        compiledActions.remove(npc.getUuid());
+        npcsByEntityId.remove(npc.getEntityId());
+        spatialIndex.remove(npc);
+        visibilityPass.untrackViewDistance(npc);
+        lookAt.remove(npc);
+        packetFactory.invalidate(npc);
     }
 
-    private void updateVisibility(Player player) {
-        UUID playerUuid = player.getUniqueId();
-        Set<UUID> visibleNpcs = visibleToPlayers.computeIfAbsent(playerUuid, k -> ConcurrentHashMap.newKeySet());
+    private SpyNPC toNPC(NPCData data, World world) {
+        NPCData.LocationData locData = data.getLocation();
+        Location location = new Location(world, locData.getX(), locData.getY(), locData.getZ(), locData.getYaw(), locData.getPitch());
 
-        for (SpyNPC npc : npcs.values()) {
-            boolean isVisible = visibleNpcs.contains(npc.getUuid());
-            boolean shouldBeVisible = shouldBeVisible(player, npc);
-
-            if (shouldBeVisible && !isVisible) {
-                spawnNPCForPlayer(npc, player);
-                visibleNpcs.add(npc.getUuid());
-            } else if (!shouldBeVisible && isVisible) {
-                despawnNPCForPlayer(npc, player);
-                visibleNpcs.remove(npc.getUuid());
+        List<SpyNPC.NPCAction> actions = new ArrayList<>();
+        if (data.getActions() != null) {
+            for (NPCData.ActionData a : data.getActions()) {
+                if (a.getType() == null) continue;
+
+                actions.add(SpyNPC.NPCAction.builder()
+                        .type(SpyNPC.ActionType.valueOf(a.getType()))
+                        .value(a.getValue() != null ? a.getValue() : "")
+                        .build());
             }
         }
+
+        return SpyNPC.builder()
+                .uuid(UUID.fromString(data.getUuid()))
+                .entityId(data.getEntityId())
+                .name(data.getName())
+                .localName(data.getLocalName())
+                .type(EntityType.valueOf(data.getType()))
+                .location(location)
+                .skinName(data.getSkinName())
+                .skinValue(data.getSkinValue())
+                .skinSignature(data.getSkinSignature())
+                .viewDistance(data.getViewDistance())
+                .lookAt(data.isLookAt())
+                .actions(actions)
+                .build();
     }
 
-    private boolean shouldBeVisible(Player player, SpyNPC npc) {
-        Location loc = npc.getLocation();
-        if (loc == null) return false;
-        
-        try {
-            World npcWorld = loc.getWorld();
-            if (npcWorld == null || !player.getWorld().equals(npcWorld)) return false;
-        } catch (IllegalArgumentException e) {
-            // World is unloaded (SpyCore hibernation)
-            return false;
-        }
-        
-        return player.getLocation().distanceSquared(loc) < 48 * 48; // 48 block range
+    @EventHandler
+    public void onQuit(PlayerQuitEvent event) {
+        visibility.forget(event.getPlayer().getUniqueId());
+        dirtyPlayers.remove(event.getPlayer().getUniqueId());
+        spawnQueue.clear(event.getPlayer().getUniqueId());
+        interactionFilter.forget(event.getPlayer().getUniqueId());
+        teamTracker.forget(event.getPlayer().getUniqueId());
+        tabRemovals.forget(event.getPlayer().getUniqueId());
+        lookAt.forget(event.getPlayer().getUniqueId());
     }
 
-    private void spawnNPCForPlayer(SpyNPC npc, Player player) {
-        EntityType type = npc.getType();
-        
-        // Setup team for the player if not already done (to disable collisions)
-        setupNPCTeam(player);
+    @EventHandler
+    public void onJoin(PlayerJoinEvent event) {
+        markDirty(event.getPlayer());
+    }
 
-        // If it's a PLAYER type and MANNEQUIN is supported, use MANNEQUIN for better performance
-        if (type == EntityType.PLAYER && MANNEQUIN_SUPPORTED) {
-            type = EntityType.valueOf("MANNEQUIN");
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onMove(PlayerMoveEvent event) {
+        if (eventDriven && changesCell(event.getFrom(), event.getTo())) {
+            markDirty(event.getPlayer());
         }
+    }
 
-        if (type == EntityType.PLAYER || type.name().equals("MANNEQUIN")) {
-            sendSpawnPackets(npc, player);
-            // Add NPC to the no-collision team
-            addNPCToTeam(npc, player);
-        } else {
-            sendSpawnPackets(npc, player);
+    // Riders don't get a PlayerMoveEvent while the vehicle moves them
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onVehicleMove(VehicleMoveEvent event) {
+        if (!eventDriven || !changesCell(event.getFrom(), event.getTo())) return;
+
+        for (Entity passenger : event.getVehicle().getPassengers()) {
+            if (passenger instanceof Player player) {
+                markDirty(player);
+            }
         }
     }
 
-    private void setupNPCTeam(Player player) {
-        // Unique team for all NPCs to hide nametags and disable collisions
-        PacketContainer teamPacket = new PacketContainer(PacketType.Play.Server.SCOREBOARD_TEAM);
-        teamPacket.getStrings().write(0, "npc_team"); // Team Name
-        teamPacket.getIntegers().write(0, 0); // Action: 0 (Create)
-        
-        try {
-            // Team parameters
-            teamPacket.getSpecificModifier(WrappedTeamParameters.class).write(0, WrappedTeamParameters.newBuilder()
-                    .displayName(WrappedChatComponent.fromText("NPCs"))
-                    .collisionRule("never")
-                    .nametagVisibility("never") // Hide the random localName
-                    .prefix(WrappedChatComponent.fromText(""))
-                    .suffix(WrappedChatComponent.fromText(""))
-                    .build());
-            
-            ProtocolLibrary.getProtocolManager().sendServerPacket(player, teamPacket);
-        } catch (Exception ignored) {}
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onTeleport(PlayerTeleportEvent event) {
+        if (!eventDriven) return;
+
+        markDirty(event.getPlayer());
+        // The tick can run before the player is actually moved, look again once they are
+        Player player = event.getPlayer();
+        Bukkit.getScheduler().runTask(plugin, () -> {
+            if (player.isOnline()) markDirty(player);
+        });
     }
 
-    private void addNPCToTeam(SpyNPC npc, Player player) {
-        PacketContainer teamPacket = new PacketContainer(PacketType.Play.Server.SCOREBOARD_TEAM);
-        teamPacket.getStrings().write(0, "npc_team");
-        teamPacket.getIntegers().write(0, 3); // 3 = ADD_ENTITIES
-        
-        // The entities to add (using the localName for PLAYER/MANNEQUIN NPCs or name for others)
-        String entry;
-        if (npc.getType() == EntityType.PLAYER) {
-            entry = npc.getLocalName();
-        } else {
-            entry = npc.getName();
-        }
-        
-        teamPacket.getSpecificModifier(Collection.class).write(0, Collections.singletonList(entry));
+    @EventHandler
+    public void onWorldChange(PlayerChangedWorldEvent event) {
+        if (eventDriven) markDirty(event.getPlayer());
+    }
 
-        try {
-            ProtocolLibrary.getProtocolManager().sendServerPacket(player, teamPacket);
-        } catch (Exception ignored) {}
+    @EventHandler
+    public void onRespawn(PlayerRespawnEvent event) {
+        if (eventDriven) markDirty(event.getPlayer());
     }
 
-    private PacketContainer createPlayerInfoPacket(SpyNPC npc, EnumSet<EnumWrappers.PlayerInfoAction> actions) {
-        PacketType infoType = PacketType.Play.Server.PLAYER_INFO;
-        try {
-            java.lang.reflect.Field field = PacketType.Play.Server.class.getField("PLAYER_INFO_UPDATE");
-            infoType = (PacketType) field.get(null);
-        } catch (Exception ignored) {}
+    private boolean changesCell(Location from, Location to) {
+        // Cheap exit for head rotation and small steps inside the same cell
+        return from.getWorld() != to.getWorld()
+                || Math.floorDiv(from.getBlockX(), updateCellSize) != Math.floorDiv(to.getBlockX(), updateCellSize)
+                || Math.floorDiv(from.getBlockZ(), updateCellSize) != Math.floorDiv(to.getBlockZ(), updateCellSize);
+    }
 
-        PacketContainer infoPacket = new PacketContainer(infoType);
-        
-        try {
-            infoPacket.getPlayerInfoActions().write(0, actions);
-        } catch (Exception e) {
-            infoPacket.getPlayerInfoActions().write(0, EnumSet.of(EnumWrappers.PlayerInfoAction.ADD_PLAYER));
-        }
-        
-        // Use localName for the profile to isolate it from real players (similar to FancyNpcs)
-        // DO NOT strip color codes as they are part of the isolation strategy
-        String profileName = npc.getLocalName() != null ? npc.getLocalName() : npc.getName();
-        WrappedGameProfile profile = new WrappedGameProfile(npc.getUuid(), profileName);
-        if (npc.getSkinValue() != null && npc.getSkinSignature() != null) {
-            profile.getProperties().put("textures", new WrappedSignedProperty("textures", npc.getSkinValue(), npc.getSkinSignature()));
-        }
-        
-        PlayerInfoData data;
-        try {
-            data = new PlayerInfoData(npc.getUuid(), 0, true, EnumWrappers.NativeGameMode.SURVIVAL, profile, WrappedChatComponent.fromText(npc.getName()), (WrappedRemoteChatSessionData) null);
-        } catch (Throwable t) {
-            data = new PlayerInfoData(profile, 0, EnumWrappers.NativeGameMode.SURVIVAL, WrappedChatComponent.fromText(npc.getName()));
-        }
-        
-        try {
-            infoPacket.getPlayerInfoDataLists().write(0, Collections.singletonList(data));
-        } catch (Exception e) {
-            infoPacket.getPlayerInfoDataLists().write(1, Collections.singletonList(data));
-        }
-        
-        return infoPacket;
+    private void markDirty(Player player) {
+        dirtyPlayers.add(player.getUniqueId());
     }
 
-    private void sendSpawnPackets(SpyNPC npc, Player player) {
-        EntityType type = npc.getType();
-        boolean isMannequin = false;
-        if (type == EntityType.PLAYER && MANNEQUIN_SUPPORTED) {
-            type = EntityType.valueOf("MANNEQUIN");
-            isMannequin = true;
+    private void markAllDirty() {
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            markDirty(player);
         }
+    }
 
-        List<PacketContainer> packets = new ArrayList<>();
+    private void startVisibilityTask() {
+        // In event-driven mode the full sweep is only a slow safety net,
+        // otherwise it is the main update loop like before.
+        long fullSweepInterval = eventDriven ? reconcileInterval : 20L;
 
-        // 1. Player Info (only for real PLAYER type, Mannequin doesn't need it)
-        if (type == EntityType.PLAYER) {
+        visibilityTask = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, () -> {
+            // Async timers can overlap when a pass runs longer than a tick; skip instead
+            if (!visibilityRunning.compareAndSet(false, true)) return;
             try {
-                PacketContainer infoPacket = createPlayerInfoPacket(npc, EnumSet.of(
-                    EnumWrappers.PlayerInfoAction.ADD_PLAYER,
-                    EnumWrappers.PlayerInfoAction.UPDATE_LISTED,
-                    EnumWrappers.PlayerInfoAction.UPDATE_DISPLAY_NAME
-                ));
-                packets.add(infoPacket);
-            } catch (Exception e) {
-                plugin.getLogger().warning("Failed to create Player Info packet for NPC " + npc.getName());
+                runVisibilityTick(fullSweepInterval);
+            } finally {
+                visibilityRunning.set(false);
+            }
+        }, 1L, 1L);
+    }
+
+    private void runVisibilityTick(long fullSweepInterval) {
+        long start = System.nanoTime();
+        List<Player> toUpdate = new ArrayList<>();
+        if (++visibilityTicks % fullSweepInterval == 0) {
+            dirtyPlayers.clear();
+            toUpdate.addAll(Bukkit.getOnlinePlayers());
+        } else if (!dirtyPlayers.isEmpty()) {
+            Iterator<UUID> iterator = dirtyPlayers.iterator();
+            while (iterator.hasNext()) {
+                UUID playerUuid = iterator.next();
+                iterator.remove();
+                Player player = Bukkit.getPlayer(playerUuid);
+                if (player != null && player.isOnline()) {
+                    toUpdate.add(player);
+                }
             }
         }
 
-        // 2. Spawn Entity
-        PacketContainer spawnPacket = new PacketContainer(PacketType.Play.Server.SPAWN_ENTITY);
-        spawnPacket.getIntegers().write(0, npc.getEntityId());
-        spawnPacket.getUUIDs().write(0, npc.getUuid());
-        spawnPacket.getEntityTypeModifier().write(0, type);
-        spawnPacket.getDoubles().write(0, npc.getLocation().getX());
-        spawnPacket.getDoubles().write(1, npc.getLocation().getY());
-        spawnPacket.getDoubles().write(2, npc.getLocation().getZ());
-        spawnPacket.getIntegers().write(1, 0);
-        
-        byte yaw = (byte) (npc.getLocation().getYaw() * 256.0F / 360.0F);
-        byte pitch = (byte) (npc.getLocation().getPitch() * 256.0F / 360.0F);
-        if (pitch > 64) pitch = 64;
-        if (pitch < -64) pitch = -64;
-        
-        try {
-            spawnPacket.getBytes().write(0, pitch);
-            spawnPacket.getBytes().write(1, yaw);
-        } catch (Exception e) {
-            try {
-                spawnPacket.getBytes().write(0, yaw);
-                spawnPacket.getBytes().write(1, pitch);
-            } catch (Exception ignored) {}
+        if (!toUpdate.isEmpty()) {
+            visibilityExecutor.run(toUpdate, this::updateVisibility);
+            metrics.getVisibilityTick().record((System.nanoTime() - start) / 1_000L);
         }
-        packets.add(spawnPacket);
-        
-        // 3. Entity Metadata
-        PacketContainer metadataPacket = new PacketContainer(PacketType.Play.Server.ENTITY_METADATA);
-        metadataPacket.getIntegers().write(0, npc.getEntityId());
-        
-        List<WrappedDataValue> dataValues = new ArrayList<>();
-        // Basic Metadata
-        dataValues.add(new WrappedDataValue(0, WrappedDataWatcher.Registry.get(Byte.class), (byte) 0)); // No status effects
-        
-        if (isMannequin) {
-            dataValues.add(new WrappedDataValue(19, WrappedDataWatcher.Registry.get(Boolean.class), true)); // Immovable
-            dataValues.add(new WrappedDataValue(17, WrappedDataWatcher.Registry.get(Byte.class), (byte) 127)); // All skin layers
-            
-            String profileName = npc.getLocalName() != null ? npc.getLocalName() : npc.getName();
-            WrappedGameProfile profile = new WrappedGameProfile(npc.getUuid(), ChatColor.stripColor(profileName));
-            if (npc.getSkinValue() != null && npc.getSkinSignature() != null) {
-                profile.getProperties().put("textures", new WrappedSignedProperty("textures", npc.getSkinValue(), npc.getSkinSignature()));
-            }
-            try {
-                dataValues.add(new WrappedDataValue(18, WrappedDataWatcher.Registry.get(WrappedGameProfile.class), profile));
-            } catch (Exception ignored) {}
-        } else if (npc.getType() == EntityType.PLAYER) {
-            dataValues.add(new WrappedDataValue(17, WrappedDataWatcher.Registry.get(Byte.class), (byte) 127)); // Skin parts (Index 17 for 1.21.x Player)
-            dataValues.add(new WrappedDataValue(18, WrappedDataWatcher.Registry.get(Byte.class), (byte) 1)); // Main hand (Right)
-        } else {
-            try {
-                dataValues.add(new WrappedDataValue(2, WrappedDataWatcher.Registry.getChatComponentSerializer(true), 
-                        Optional.of(WrappedChatComponent.fromText(npc.getName()).getHandle())));
-                dataValues.add(new WrappedDataValue(3, WrappedDataWatcher.Registry.get(Boolean.class), true));
-            } catch (Exception ignored) {}
+        drainSpawnQueue();
+        // After the spawns, so the passes never race a spawn or despawn
+        if (lookAtInterval > 0 && visibilityTicks % lookAtInterval == 0) {
+            lookAt.tick();
         }
-        
-        try {
-            metadataPacket.getDataValueCollectionModifier().write(0, dataValues);
-        } catch (Exception e) {
-            List<WrappedWatchableObject> watchables = new ArrayList<>();
-            for (WrappedDataValue value : dataValues) {
-                watchables.add(new WrappedWatchableObject(new WrappedDataWatcher.WrappedDataWatcherObject(value.getIndex(), value.getSerializer()), value.getValue()));
+    }
+
+    private void drainSpawnQueue() {
+        for (UUID playerUuid : spawnQueue.getPlayers()) {
+            List<SpyNPC> toSpawn = spawnQueue.poll(playerUuid, spawnsPerTick);
+            if (toSpawn.isEmpty()) continue;
+
+            Player player = Bukkit.getPlayer(playerUuid);
+            if (player == null || !player.isOnline()) {
+                spawnQueue.clear(playerUuid);
+                continue;
             }
-            metadataPacket.getWatchableCollectionModifier().write(0, watchables);
-        }
-        packets.add(metadataPacket);
 
-        // 4. Head Rotation
-        PacketContainer headRotationPacket = new PacketContainer(PacketType.Play.Server.ENTITY_HEAD_ROTATION);
-        headRotationPacket.getIntegers().write(0, npc.getEntityId());
-        headRotationPacket.getBytes().write(0, yaw);
-        packets.add(headRotationPacket);
+            Location playerLoc = player.getLocation();
+            PacketBatch batch = newBatch(player);
+            for (SpyNPC npc : toSpawn) {
+                // The player may have moved on or the NPC was removed while it was queued
+                if (!npcs.containsKey(npc.getUuid()) || visibility.isVisible(playerUuid, npc)) continue;
+                if (!visibilityPass.shouldBeVisible(playerLoc, npc, false)) continue;
 
-        // 5. Attributes (Scale and Max Health)
-        if (npc.getType() == EntityType.PLAYER || isMannequin) {
-            try {
-                PacketContainer attributesPacket = new PacketContainer(PacketType.Play.Server.UPDATE_ATTRIBUTES);
-                attributesPacket.getIntegers().write(0, npc.getEntityId());
-                List<WrappedAttribute> attributes = new ArrayList<>();
-                
-                // Max Health 1.0 to hide from mods
-                attributes.add(WrappedAttribute.newBuilder()
-                        .attributeKey("minecraft:generic.max_health")
-                        .baseValue(1.0)
-                        .build());
-                
-                // Scale 1.0
-                attributes.add(WrappedAttribute.newBuilder()
-                        .attributeKey("minecraft:scale")
-                        .baseValue(1.0)
-                        .build());
-                
-                attributesPacket.getAttributeCollectionModifier().write(0, attributes);
-                packets.add(attributesPacket);
-            } catch (Throwable ignored) {}
+                spawnNPCForPlayer(npc, player, batch);
+                visibility.setVisible(playerUuid, npc, true);
+            }
+            batch.flush();
         }
+    }
 
-        // Send all packets sequentially
-        for (PacketContainer packet : packets) {
-            try {
-                ProtocolLibrary.getProtocolManager().sendServerPacket(player, packet);
-            } catch (Exception e) {
-                plugin.getLogger().warning("Failed to send packet " + packet.getType() + " for NPC " + npc.getName());
+    private void updateVisibility(Player player) {
+        long start = System.nanoTime();
+        UUID playerUuid = player.getUniqueId();
+        PacketBatch batch = newBatch(player);
+
+        int evaluated = visibilityPass.run(playerUuid, player.getLocation(), new VisibilityPass.Changes() {
+            @Override
+            public void enterRange(SpyNPC npc, double distanceSquared) {
+                // Spawns are rate limited and go out closest first
+                spawnQueue.enqueue(playerUuid, npc, distanceSquared);
             }
-        }
 
-        // 6. Remove from tab after delay if it's a real player NPC
-        if (npc.getType() == EntityType.PLAYER && !isMannequin) {
-            Bukkit.getScheduler().runTaskLater(plugin, () -> {
-                if (!player.isOnline()) return;
-                PacketContainer removeInfo = new PacketContainer(PacketType.Play.Server.PLAYER_INFO_REMOVE);
-                removeInfo.getUUIDLists().write(0, Collections.singletonList(npc.getUuid()));
-                try {
-                    ProtocolLibrary.getProtocolManager().sendServerPacket(player, removeInfo);
-                } catch (Exception ignored) {}
-            }, 20L); // Reduced to 20 ticks (1 second)
-        }
+            @Override
+            public void outOfRange(SpyNPC npc) {
+                spawnQueue.cancel(playerUuid, npc.getUuid());
+            }
+
+            @Override
+            public void leaveRange(SpyNPC npc) {
+                despawnNPCForPlayer(npc, player, batch);
+            }
+        });
+
+        // Despawns skip the queue, one write for the whole pass
+        batch.flush();
+        metrics.recordVisibilityPass(System.nanoTime() - start, evaluated);
     }
 
-    private void despawnNPCForPlayer(SpyNPC npc, Player player) {
-        PacketContainer destroyPacket = new PacketContainer(PacketType.Play.Server.ENTITY_DESTROY);
-        destroyPacket.getIntLists().write(0, Collections.singletonList(npc.getEntityId()));
-        
-        try {
-            ProtocolLibrary.getProtocolManager().sendServerPacket(player, destroyPacket);
-        } catch (Exception e) {
-            e.printStackTrace();
+    private void spawnNPCForPlayer(SpyNPC npc, Player player, PacketBatch batch) {
+        sendSpawnPackets(npc, player, batch);
+        // Spawned with its own rotation
+        lookAt.reset(player.getUniqueId(), npc);
+
+        // PLAYER NPCs (and the MANNEQUIN they are sent as) go into the no-collision team,
+        // created for this player on the first one
+        teamTracker.addEntry(player.getUniqueId(), getTeamEntry(npc), batch);
+    }
+
+    private String getTeamEntry(SpyNPC npc) {
+        // The entry is the localName the PLAYER/MANNEQUIN NPC is spawned with
+        return npc.getType() == EntityType.PLAYER ? npc.getLocalName() : null;
+    }
+
+    private void sendSpawnPackets(SpyNPC npc, Player player, PacketBatch batch) {
+        NPCPacketFactory.SpawnBundle bundle = packetFactory.getSpawnBundle(npc);
+        batch.addAll(bundle.packets());
+
+        // Remove from tab after delay if it's a real player NPC, batched with the
+        // other removals due for this player in the same tick
+        if (bundle.removeFromTab()) {
+            tabRemovals.schedule(player.getUniqueId(), npc.getUuid());
         }
+    }
 
-        if (npc.getType() == org.bukkit.entity.EntityType.PLAYER) {
-            PacketContainer removeInfo = new PacketContainer(PacketType.Play.Server.PLAYER_INFO_REMOVE);
-            removeInfo.getUUIDLists().write(0, Collections.singletonList(npc.getUuid()));
-            try {
-                ProtocolLibrary.getProtocolManager().sendServerPacket(player, removeInfo);
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+    private void despawnNPCForPlayer(SpyNPC npc, Player player, PacketBatch batch) {
+        // Merged with the other removals of this pass into one ENTITY_DESTROY
+        batch.destroy(npc.getEntityId());
+        if (npc.getType() == EntityType.PLAYER) {
+            batch.removeInfo(npc.getUuid());
+            tabRemovals.cancel(player.getUniqueId(), npc.getUuid());
         }
+        teamTracker.removeEntry(player.getUniqueId(), getTeamEntry(npc), batch);
+        lookAt.reset(player.getUniqueId(), npc);
+    }
+
+    private PacketBatch newBatch(Player player) {
+        return new PacketBatch(player, bundlePackets, metrics);
     }
 
     private void setupProtocolListener() {
-        ProtocolLibrary.getProtocolManager().addPacketListener(new PacketAdapter(plugin, PacketType.Play.Client.USE_ENTITY) {
+        interactListener = new PacketAdapter(plugin, PacketType.Play.Client.USE_ENTITY) {
             @Override
             public void onPacketReceiving(PacketEvent event) {
                 PacketContainer packet = event.getPacket();
                 int entityId = packet.getIntegers().read(0);
                 
-                if (entityIdToUuid.containsKey(entityId)) {
-                    UUID npcUuid = entityIdToUuid.get(entityId);
-                    SpyNPC npc = npcs.get(npcUuid);
-                    if (npc != null) {
-                        handleNPCInteract(event.getPlayer(), npc);
+                // Single probe, no allocation for interactions with real entities
+                SpyNPC npc = npcsByEntityId.get(entityId);
+                if (npc == null) return;
+
+                // Drop duplicate and spammed clicks here instead of scheduling them
+                EnumWrappers.EntityUseAction action = null;
+                EnumWrappers.Hand hand = null;
+                try {
+                    WrappedEnumEntityUseAction useAction = packet.getEnumEntityUseActions().read(0);
+                    action = useAction.getAction();
+                    if (action != EnumWrappers.EntityUseAction.ATTACK) {
+                        hand = useAction.getHand();
                     }
+                } catch (Exception ignored) {}
+
+                if (interactionFilter.accept(event.getPlayer().getUniqueId(), entityId, action, hand)) {
+                    handleNPCInteract(event.getPlayer(), npc);
                 }
             }
-        });
+        };
+        ProtocolLibrary.getProtocolManager().addPacketListener(interactListener);
     }
 
     private void handleNPCInteract(Player player, SpyNPC npc) {
-        Bukkit.getScheduler().runTask(plugin, () -> {
-            for (SpyNPC.NPCAction action : npc.getActions()) {
-                String value = action.getValue().replace("%player%", player.getName());
-                switch (action.getType()) {
-                    case COMMAND -> player.performCommand(value);
-                    case CONSOLE_COMMAND -> Bukkit.dispatchCommand(Bukkit.getConsoleSender(), value);
-                    case MESSAGE -> player.sendMessage(value.replace("&", "§"));
-                    case SHOP -> Bukkit.dispatchCommand(Bukkit.getConsoleSender(), "shop open " + player.getName() + " " + value);
-                    case SERVER -> {
-                        // Logic to send player to another server if using a proxy like BungeeCord/Velocity
-                    }
+        ActionPlan plan = compiledActions.getOrDefault(npc.getUuid(), ActionPlan.EMPTY);
+        if (plan.isEmpty()) return;
+
+        if (plan.async().isEmpty()) {
+            interactionQueue.submit(player, plan.mainThread());
+            return;
+        }
+
+        // Leading messages and proxy transfers don't need the main thread. The rest is
+        // queued once they ran, so the configured order holds.
+        try {
+            asyncActions.execute(() -> {
+                CompiledAction.executeAll(player, plan.async(), plugin.getLogger());
+                metrics.getAsyncInteractionsExecuted().increment();
+                if (!plan.mainThread().isEmpty()) {
+                    interactionQueue.submit(player, plan.mainThread());
                 }
-            }
-        });
+            });
+        } catch (RejectedExecutionException e) {
+            // A click that was already being handled when the plugin disabled
+        }
+    }
+
+    private void compileActions(SpyNPC npc) {
+        List<SpyNPC.NPCAction> actions = npc.getActions();
+        List<CompiledAction> compiled = new ArrayList<>(actions.size());
+        for (SpyNPC.NPCAction action : actions) {
+            compiled.add(CompiledAction.compile(action, placeholders, serverConnector));
+        }
+        compiledActions.put(npc.getUuid(), ActionPlan.of(compiled));
+    }
+
+    /**
+     * Adds a {@code %name%} placeholder for action values. Already loaded actions are
+     * compiled again so they pick it up.
+     * <p>
+     * Messages and proxy transfers at the start of an NPC's actions are filled in off
+     * the main thread, so the resolver has to be thread-safe and mustn't touch
+     * worlds or entities other than reading the player's name and UUID.
+     */
+    public void registerPlaceholder(String name, Function<Player, String> resolver) {
+        placeholders.register(name, resolver);
+        for (SpyNPC npc : npcs.values()) {
+            compileActions(npc);
+        }
     }
 
     public void removeAction(UUID npcUuid, int index) {
         SpyNPC npc = npcs.get(npcUuid);
-        if (npc != null && index >= 0 && index < npc.getActions().size()) {
-            npc.getActions().remove(index);
+        if (npc != null && npc.removeAction(index)) {
+            compileActions(npc);
         }
     }
 
     public void addAction(UUID npcUuid, SpyNPC.NPCAction action) {
         SpyNPC npc = npcs.get(npcUuid);
         if (npc != null) {
-            npc.getActions().add(action);
+            npc.addAction(action);
+            compileActions(npc);
         }
     }
 
     public void createNPC(SpyNPC npc) {
+        compileActions(npc);
         npcs.put(npc.getUuid(), npc);
-        entityIdToUuid.put(npc.getEntityId(), npc.getUuid());
+        visibility.register(npc);
+        names.put(npc.getUuid(), npc.getName());
+        npcsByEntityId.put(npc.getEntityId(), npc);
+        spatialIndex.add(npc);
+        visibilityPass.trackViewDistance(npc);
+        lookAt.track(npc);
         saveNPC(npc); // Save immediately
-        for (Player player : Bukkit.getOnlinePlayers()) {
-            updateVisibility(player);
-        }
+        // Picked up by the visibility task on the next tick
+        markAllDirty();
     }
 
     public void refreshNPC(SpyNPC npc) {
-        for (Player player : Bukkit.getOnlinePlayers()) {
-            Set<UUID> visibleNpcs = visibleToPlayers.get(player.getUniqueId());
-            if (visibleNpcs != null && visibleNpcs.contains(npc.getUuid())) {
-                despawnNPCForPlayer(npc, player);
-                spawnNPCForPlayer(npc, player);
+        // The location, skin or actions may have changed, keep the grid and actions in sync.
+        // Spawn packets are cached per appearance version and rebuild on their own.
+        spatialIndex.update(npc);
+        names.put(npc.getUuid(), npc.getName());
+        compileActions(npc);
+        // Only the players that see it, straight from the reverse index
+        for (UUID viewer : visibility.getViewers(npc.getUuid())) {
+            Player player = Bukkit.getPlayer(viewer);
+            if (player == null || !player.isOnline()) continue;
+
+            PacketBatch batch = newBatch(player);
+            despawnNPCForPlayer(npc, player, batch);
+            spawnNPCForPlayer(npc, player, batch);
+            batch.flush();
+        }
+        saveNPC(npc);
+    }
+
+    public void renameNPC(SpyNPC npc, String name) {
+        npc.setName(name);
+        // Re-indexes the name and re-sends it to viewers
+        refreshNPC(npc);
+    }
+
+    public void teleportNPC(SpyNPC npc, Location location) {
+        npc.setLocation(location);
+        refreshNPC(npc);
+        // Players near the new location pick it up on the next tick
+        markAllDirty();
+    }
+
+    public void setSkin(SpyNPC npc, String skinName, String skinValue, String skinSignature) {
+        npc.setSkin(skinName, skinValue, skinSignature);
+        refreshNPC(npc);
+    }
+
+    /**
+     * Overrides how close players have to be for this NPC to spawn, null resets it
+     * to the configured default. Capped at visibility.max-view-distance.
+     *
+     * @return the view distance that was set
+     * @throws IllegalArgumentException if the distance isn't a finite number above 0
+     */
+    public Double setViewDistance(SpyNPC npc, Double viewDistance) {
+        if (viewDistance != null) {
+            if (!Double.isFinite(viewDistance) || viewDistance <= 0) {
+                throw new IllegalArgumentException("View distance must be a number greater than 0");
             }
+            viewDistance = Math.min(viewDistance, visibilityPass.getMaxViewDistance());
         }
+        npc.setViewDistance(viewDistance);
+        visibilityPass.trackViewDistance(npc);
         saveNPC(npc);
+        markAllDirty();
+        return viewDistance;
     }
 
+    /**
+     * Turns the NPC towards players within look-at.radius. Viewers are updated by the
+     * next look-at passes, no respawn needed either way.
+     */
+    public void setLookAt(SpyNPC npc, boolean enabled) {
+        npc.setLookAt(enabled);
+        lookAt.track(npc);
+        saveNPC(npc);
+    }
+
+    /**
+     * Queues the NPC for saving. The state is copied now, the file is written
+     * shortly after on the persistence thread.
+     */
     public void saveNPC(SpyNPC npc) {
-        File file = new File(npcsFolder, npc.getUuid().toString() + ".json");
-        try (FileWriter writer = new FileWriter(file)) {
-            Map<String, Object> data = new HashMap<>();
-            data.put("uuid", npc.getUuid().toString());
-            data.put("entityId", npc.getEntityId());
-            data.put("name", npc.getName());
-            data.put("localName", npc.getLocalName());
-            data.put("type", npc.getType().name());
-            data.put("skinName", npc.getSkinName());
-            data.put("skinValue", npc.getSkinValue());
-            data.put("skinSignature", npc.getSkinSignature());
-            
-            Map<String, Object> loc = new HashMap<>();
-            loc.put("world", npc.getLocation().getWorld().getName());
-            loc.put("x", npc.getLocation().getX());
-            loc.put("y", npc.getLocation().getY());
-            loc.put("z", npc.getLocation().getZ());
-            loc.put("yaw", npc.getLocation().getYaw());
-            loc.put("pitch", npc.getLocation().getPitch());
-            data.put("location", loc);
-            
-            List<Map<String, String>> actions = new ArrayList<>();
-            for (SpyNPC.NPCAction action : npc.getActions()) {
-                Map<String, String> a = new HashMap<>();
-                a.put("type", action.getType().name());
-                a.put("value", action.getValue());
-                actions.add(a);
-            }
-            data.put("actions", actions);
-            
-            gson.toJson(data, writer);
-        } catch (IOException e) {
+        try {
+            persistence.save(NPCData.from(npc));
+        } catch (Exception e) {
             plugin.getLogger().severe("Could not save NPC " + npc.getName() + ": " + e.getMessage());
         }
     }
@@ -591,34 +798,35 @@ public class NPCManager implements Listener {
     public void removeNPC(UUID uuid) {
         SpyNPC npc = npcs.get(uuid);
         if (npc != null) {
-            // Despawn for all players before removing from the map
-            for (Player player : Bukkit.getOnlinePlayers()) {
-                despawnNPCForPlayer(npc, player);
-                Set<UUID> visibleNpcs = visibleToPlayers.get(player.getUniqueId());
-                if (visibleNpcs != null) {
-                    visibleNpcs.remove(uuid);
-                }
+            // Despawn for its viewers before removing from the map
+            for (UUID viewer : visibility.getViewers(uuid)) {
+                Player player = Bukkit.getPlayer(viewer);
+                if (player == null || !player.isOnline()) continue;
+
+                PacketBatch batch = newBatch(player);
+                despawnNPCForPlayer(npc, player, batch);
+                batch.flush();
             }
             
-            npcs.remove(uuid);
-            entityIdToUuid.remove(npc.getEntityId());
+            // Also clears it from every player's visible set
+            unregister(npc);
+            spawnQueue.cancelAll(uuid);
             
-            // Delete from disk
-            File file = new File(npcsFolder, uuid.toString() + ".json");
-            if (file.exists()) {
-                file.delete();
-            }
+            // Delete from disk (also drops any save still pending for it)
+            persistence.delete(uuid);
         }
     }
 
     public SpyNPC getNPCByName(String name) {
-        String strippedName = ChatColor.stripColor(name);
-        for (SpyNPC npc : npcs.values()) {
-            if (ChatColor.stripColor(npc.getName()).equalsIgnoreCase(strippedName)) {
-                return npc;
-            }
-        }
-        return null;
+        UUID uuid = names.find(name);
+        return uuid != null ? npcs.get(uuid) : null;
+    }
+
+    /**
+     * Names of loaded NPCs starting with the prefix, colors stripped, for tab completion.
+     */
+    public List<String> completeNPCNames(String prefix, int limit) {
+        return names.complete(prefix, limit);
     }
 
     public Collection<SpyNPC> getAllNPCs() {
@@ -0,0 +1,102 @@
+package com.spygamingog.spynpcs.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram with power-of-two buckets: bucket i counts values below
+ * 2^i (bucket 0 holds 0). Recording is one LongAdder increment per value;
+ * percentiles are approximate and report the upper bound of their bucket.
+ */
+public class Histogram {
+    private static final int BUCKETS = 40;
+
+    private final String name;
+    private final String help;
+    private final String unit;
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0L);
+
+    public Histogram(String name, String help, String unit) {
+        this.name = name;
+        this.help = help;
+        this.unit = unit;
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long value) {
+        if (value < 0) value = 0;
+        buckets[Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value))].increment();
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getHelp() {
+        return help;
+    }
+
+    public String getUnit() {
+        return unit;
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0.0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * Upper bound of the bucket the given quantile (0..1) falls into.
+     */
+    public long getPercentile(double quantile) {
+        long[] counts = getBucketCounts();
+        long total = 0;
+        for (long c : counts) total += c;
+        if (total == 0) return 0;
+
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) return getUpperBound(i);
+        }
+        return getUpperBound(BUCKETS - 1);
+    }
+
+    long[] getBucketCounts() {
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return counts;
+    }
+
+    // Values in bucket i are < 2^i, bucket 0 only holds 0
+    static long getUpperBound(int bucket) {
+        return bucket == 0 ? 0L : (1L << bucket) - 1;
+    }
+
+    static int getBucketCount() {
+        return BUCKETS;
+    }
+}
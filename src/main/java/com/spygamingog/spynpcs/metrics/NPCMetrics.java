@@ -0,0 +1,114 @@
+package com.spygamingog.spynpcs.metrics;
+
+import com.comphenix.protocol.PacketType;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * What SpyNPCs costs at runtime. Hot paths only touch LongAdders (histograms are
+ * arrays of them); the counters other components already keep (spawn queue,
+ * interaction filter/queue, persistence) are registered as suppliers and read
+ * when the stats are shown or exported.
+ */
+@Getter
+public class NPCMetrics {
+    private final Histogram visibilityPass = new Histogram("spynpcs_visibility_pass_micros",
+            "Duration of one player's visibility pass", "µs");
+    private final Histogram visibilityTick = new Histogram("spynpcs_visibility_tick_micros",
+            "Wall-clock time of all visibility passes of one tick", "µs");
+    private final Histogram npcsEvaluated = new Histogram("spynpcs_visibility_npcs_evaluated",
+            "NPCs distance-checked in one player's visibility pass", "");
+    private final Histogram storageFlush = new Histogram("spynpcs_storage_flush_millis",
+            "Duration of one write-behind batch, including the storage flush", "ms");
+    private final Histogram storageLoad = new Histogram("spynpcs_storage_load_millis",
+            "Duration of loading and registering all NPCs", "ms");
+    private final LongAdder asyncInteractionsExecuted = new LongAdder();
+    // Packets written to players by type, bundle contents counted individually
+    private final Map<String, LongAdder> packetsSent = new ConcurrentHashMap<>();
+    // Sorted so the export and /spynpc stats have a stable order
+    private final Map<String, Value> values = new ConcurrentSkipListMap<>();
+
+    public record Value(String name, String help, boolean counter, LongSupplier supplier) {}
+
+    public void recordVisibilityPass(long nanos, int evaluated) {
+        visibilityPass.record(nanos / 1_000L);
+        npcsEvaluated.record(evaluated);
+    }
+
+    public void countPacket(PacketType type) {
+        packetsSent.computeIfAbsent(type.name(), k -> new LongAdder()).increment();
+    }
+
+    /**
+     * A value that only goes up (e.g. clicks received), exported as a Prometheus counter.
+     */
+    public void registerCounter(String name, String help, LongSupplier supplier) {
+        values.put(name, new Value(name, help, true, supplier));
+    }
+
+    /**
+     * A value that goes up and down (e.g. a queue depth).
+     */
+    public void registerGauge(String name, String help, LongSupplier supplier) {
+        values.put(name, new Value(name, help, false, supplier));
+    }
+
+    public List<Histogram> getHistograms() {
+        return List.of(visibilityPass, visibilityTick, npcsEvaluated, storageFlush, storageLoad);
+    }
+
+    public Map<String, Long> getPacketCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        packetsSent.forEach((type, adder) -> counts.put(type, adder.sum()));
+        return counts;
+    }
+
+    /**
+     * Writes everything in the Prometheus text exposition format.
+     */
+    public void writePrometheus(Writer out) throws IOException {
+        for (Value value : values.values()) {
+            out.write("# HELP " + value.name() + " " + value.help() + "\n");
+            out.write("# TYPE " + value.name() + " " + (value.counter() ? "counter" : "gauge") + "\n");
+            out.write(value.name() + " " + value.supplier().getAsLong() + "\n");
+        }
+
+        out.write("# HELP spynpcs_interactions_async_executed_total Clicks whose actions ran off the main thread\n");
+        out.write("# TYPE spynpcs_interactions_async_executed_total counter\n");
+        out.write("spynpcs_interactions_async_executed_total " + asyncInteractionsExecuted.sum() + "\n");
+
+        out.write("# HELP spynpcs_packets_sent_total Packets sent to players, by type\n");
+        out.write("# TYPE spynpcs_packets_sent_total counter\n");
+        for (Map.Entry<String, Long> entry : getPacketCounts().entrySet()) {
+            out.write("spynpcs_packets_sent_total{type=\"" + entry.getKey() + "\"} " + entry.getValue() + "\n");
+        }
+
+        for (Histogram histogram : getHistograms()) {
+            writeHistogram(out, histogram);
+        }
+    }
+
+    private static void writeHistogram(Writer out, Histogram histogram) throws IOException {
+        String name = histogram.getName();
+        out.write("# HELP " + name + " " + histogram.getHelp() + "\n");
+        out.write("# TYPE " + name + " histogram\n");
+
+        long[] counts = histogram.getBucketCounts();
+        long cumulative = 0;
+        for (int i = 0; i < counts.length - 1; i++) {
+            cumulative += counts[i];
+            out.write(name + "_bucket{le=\"" + Histogram.getUpperBound(i) + "\"} " + cumulative + "\n");
+        }
+        cumulative += counts[counts.length - 1];
+        out.write(name + "_bucket{le=\"+Inf\"} " + cumulative + "\n");
+        out.write(name + "_sum " + histogram.getSum() + "\n");
+        out.write(name + "_count " + cumulative + "\n");
+    }
+}
@@ -0,0 +1,46 @@
+package com.spygamingog.spynpcs.metrics;
+
+import com.spygamingog.spynpcs.utils.IOUtils;
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Periodically writes the metrics to a file in Prometheus text format, for the
+ * node_exporter textfile collector or anything else that scrapes files. Written
+ * through a temp file and a rename so a scraper never reads half a file.
+ */
+public class PrometheusFileExporter {
+    private final Plugin plugin;
+    private final NPCMetrics metrics;
+    private final File file;
+    private final long intervalTicks;
+
+    public PrometheusFileExporter(Plugin plugin, NPCMetrics metrics, File file, long intervalSeconds) {
+        this.plugin = plugin;
+        this.metrics = metrics;
+        this.file = file;
+        this.intervalTicks = Math.max(1L, intervalSeconds) * 20L;
+    }
+
+    public void start() {
+        Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this::write, intervalTicks, intervalTicks);
+    }
+
+    public void write() {
+        try {
+            IOUtils.writeAtomically(file.toPath(), out -> {
+                Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+                metrics.writePrometheus(writer);
+                writer.flush();
+            });
+        } catch (IOException e) {
+            plugin.getLogger().warning("Could not write metrics to " + file.getPath() + ": " + e.getMessage());
+        }
+    }
+}
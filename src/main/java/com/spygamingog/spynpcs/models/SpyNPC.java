@@ -1,28 +1,216 @@
 package com.spygamingog.spynpcs.models;
 
+import lombok.AccessLevel;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import lombok.Value;
+import lombok.With;
 import org.bukkit.Location;
 import org.bukkit.entity.EntityType;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
 
+/**
+ * An NPC is its identity (uuid, entity id) plus an immutable {@link Snapshot} of
+ * everything else. Changes build a new snapshot with the next version number and
+ * swap it in atomically, so the visibility task, the packet threads and the main
+ * thread read a consistent state without locking.
+ */
 @Data
-@Builder
 public class SpyNPC {
     private final UUID uuid;
     private final int entityId;
-    private String name;
-    private String localName;
-    private Location location;
-    private EntityType type;
-    private String skinName;
-    private String skinValue;
-    private String skinSignature;
-    @Builder.Default
-    private List<NPCAction> actions = new ArrayList<>();
-    
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private final AtomicReference<Snapshot> state;
+
+    @Builder
+    private SpyNPC(UUID uuid, int entityId, String name, String localName, Location location, EntityType type,
+                   String skinName, String skinValue, String skinSignature, Double viewDistance, boolean lookAt,
+                   List<NPCAction> actions) {
+        this.uuid = uuid;
+        this.entityId = entityId;
+        this.state = new AtomicReference<>(new Snapshot(0L, 0L, name, localName, location != null ? location.clone() : null,
+                type, skinName, skinValue, skinSignature, viewDistance, lookAt, actions != null ? List.copyOf(actions) : List.of()));
+    }
+
+    /**
+     * Everything about the NPC that can change. The location is a private copy and
+     * must not be modified; the version goes up by one with every change, the
+     * appearance version only with changes to what the spawn packets show.
+     */
+    @Value
+    @With(AccessLevel.PRIVATE)
+    public static class Snapshot {
+        long version;
+        // Name, location, type or skin changed, cached spawn packets are stale
+        long appearanceVersion;
+        String name;
+        String localName;
+        Location location;
+        EntityType type;
+        String skinName;
+        String skinValue;
+        String skinSignature;
+        // Spawn distance override in blocks, null uses the configured default
+        Double viewDistance;
+        // Turns to face nearby players instead of keeping the location's rotation
+        boolean lookAt;
+        List<NPCAction> actions;
+    }
+
+    public Snapshot getSnapshot() {
+        return state.get();
+    }
+
+    public long getVersion() {
+        return state.get().getVersion();
+    }
+
+    public String getName() {
+        return state.get().getName();
+    }
+
+    public String getLocalName() {
+        return state.get().getLocalName();
+    }
+
+    /**
+     * A copy of the location, see {@link Snapshot#getLocation()} to read it without copying.
+     */
+    public Location getLocation() {
+        Location location = state.get().getLocation();
+        return location != null ? location.clone() : null;
+    }
+
+    public EntityType getType() {
+        return state.get().getType();
+    }
+
+    public String getSkinName() {
+        return state.get().getSkinName();
+    }
+
+    public String getSkinValue() {
+        return state.get().getSkinValue();
+    }
+
+    public String getSkinSignature() {
+        return state.get().getSkinSignature();
+    }
+
+    public Double getViewDistance() {
+        return state.get().getViewDistance();
+    }
+
+    public boolean isLookAt() {
+        return state.get().isLookAt();
+    }
+
+    /**
+     * Unmodifiable, use {@link #addAction}, {@link #removeAction} or {@link #setActions}.
+     */
+    public List<NPCAction> getActions() {
+        return state.get().getActions();
+    }
+
+    public void setName(String name) {
+        updateAppearance(s -> s.withName(name));
+    }
+
+    public void setLocalName(String localName) {
+        updateAppearance(s -> s.withLocalName(localName));
+    }
+
+    public void setLocation(Location location) {
+        Location copy = location != null ? location.clone() : null;
+        updateAppearance(s -> s.withLocation(copy));
+    }
+
+    public void setType(EntityType type) {
+        updateAppearance(s -> s.withType(type));
+    }
+
+    public void setSkinName(String skinName) {
+        updateAppearance(s -> s.withSkinName(skinName));
+    }
+
+    public void setSkinValue(String skinValue) {
+        updateAppearance(s -> s.withSkinValue(skinValue));
+    }
+
+    public void setSkinSignature(String skinSignature) {
+        updateAppearance(s -> s.withSkinSignature(skinSignature));
+    }
+
+    /**
+     * Changes the whole skin in one version, readers never see a value from one skin
+     * with the signature of another.
+     */
+    public void setSkin(String skinName, String skinValue, String skinSignature) {
+        updateAppearance(s -> s.withSkinName(skinName).withSkinValue(skinValue).withSkinSignature(skinSignature));
+    }
+
+    public void setViewDistance(Double viewDistance) {
+        update(s -> s.withViewDistance(viewDistance));
+    }
+
+    public void setLookAt(boolean lookAt) {
+        update(s -> s.withLookAt(lookAt));
+    }
+
+    public void setActions(List<NPCAction> actions) {
+        List<NPCAction> copy = List.copyOf(actions);
+        update(s -> s.withActions(copy));
+    }
+
+    public void addAction(NPCAction action) {
+        update(s -> {
+            List<NPCAction> actions = new ArrayList<>(s.getActions());
+            actions.add(action);
+            return s.withActions(List.copyOf(actions));
+        });
+    }
+
+    /**
+     * @return false if the index is out of range
+     */
+    public boolean removeAction(int index) {
+        Snapshot current;
+        do {
+            current = state.get();
+            if (index < 0 || index >= current.getActions().size()) return false;
+            List<NPCAction> actions = new ArrayList<>(current.getActions());
+            actions.remove(index);
+            if (state.compareAndSet(current, current.withActions(List.copyOf(actions)).withVersion(current.getVersion() + 1))) {
+                return true;
+            }
+        } while (true);
+    }
+
+    private void updateAppearance(UnaryOperator<Snapshot> change) {
+        update(s -> change.apply(s).withAppearanceVersion(s.getAppearanceVersion() + 1));
+    }
+
+    private void update(UnaryOperator<Snapshot> change) {
+        Snapshot current;
+        Snapshot next;
+        do {
+            current = state.get();
+            next = change.apply(current).withVersion(current.getVersion() + 1);
+        } while (!state.compareAndSet(current, next));
+    }
+
     @Data
     @Builder
     public static class NPCAction {
@@ -30,7 +218,12 @@ public class SpyNPC {
         private final String value;
     }
 
+    @Getter
+    @RequiredArgsConstructor
     public enum ActionType {
-        COMMAND, MESSAGE, SHOP, SERVER, CONSOLE_COMMAND
+        COMMAND(true), MESSAGE(false), SHOP(true), SERVER(false), CONSOLE_COMMAND(true);
+
+        // Whether the action touches server state and has to run on the main thread
+        private final boolean mainThread;
     }
 }
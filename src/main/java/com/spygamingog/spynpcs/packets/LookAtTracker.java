@@ -0,0 +1,209 @@
+package com.spygamingog.spynpcs.packets;
+
+import com.spygamingog.spynpcs.metrics.NPCMetrics;
+import com.spygamingog.spynpcs.models.SpyNPC;
+import com.spygamingog.spynpcs.visibility.VisibilityTracker;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Turns look-at NPCs towards the viewers within the radius, per viewer, and back
+ * to their own rotation once the viewer leaves it. Rotations are compared as the
+ * angle bytes the client receives, so a pair only costs packets when what that
+ * viewer sees actually changes. A pass sends at most {@code updatesPerPass}
+ * rotations across all players; the rest is picked up by the next pass, starting
+ * where this one stopped.
+ * <p>
+ * Runs on the visibility thread after the spawns, so it never races a spawn or
+ * despawn of the same pair (both reset the pair to the NPC's own rotation).
+ */
+public class LookAtTracker {
+    // Eye height of a standing player, close enough for the other NPC types too
+    private static final double EYE_HEIGHT = 1.62;
+    private static final int DEFAULT = Integer.MIN_VALUE;
+
+    private final VisibilityTracker visibility;
+    private final NPCPacketFactory packetFactory;
+    private final NPCMetrics metrics;
+    private final boolean bundlePackets;
+    private final double radiusSquared;
+    private final int updatesPerPass;
+    // NPC -> viewer -> angles (yaw << 8 | pitch) sent to that viewer, no entry = the NPC's own rotation.
+    // Contains look-at NPCs plus NPCs that had it turned off and still face someone.
+    private final Map<UUID, Map<UUID, Integer>> sent = new ConcurrentHashMap<>();
+    private final Map<UUID, SpyNPC> tracked = new ConcurrentHashMap<>();
+    private int cursor;
+
+    private final LongAdder updatesSent = new LongAdder();
+    private final LongAdder unchanged = new LongAdder();
+    private final LongAdder deferred = new LongAdder();
+
+    public LookAtTracker(VisibilityTracker visibility, NPCPacketFactory packetFactory, NPCMetrics metrics,
+                         boolean bundlePackets, double radius, int updatesPerPass) {
+        this.visibility = visibility;
+        this.packetFactory = packetFactory;
+        this.metrics = metrics;
+        this.bundlePackets = bundlePackets;
+        this.radiusSquared = radius * radius;
+        this.updatesPerPass = updatesPerPass > 0 ? updatesPerPass : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Starts tracking the NPC if it has look-at on. Turning it off is picked up by
+     * the next passes, which turn it back for everyone before dropping it.
+     */
+    public void track(SpyNPC npc) {
+        if (npc.isLookAt()) {
+            tracked.put(npc.getUuid(), npc);
+        }
+    }
+
+    public void remove(SpyNPC npc) {
+        tracked.remove(npc.getUuid());
+        sent.remove(npc.getUuid());
+    }
+
+    /**
+     * The NPC was (re)spawned or destroyed for the player, the client is back to
+     * its own rotation. Safe to call from any thread, cheap for untracked NPCs.
+     */
+    public void reset(UUID player, SpyNPC npc) {
+        Map<UUID, Integer> viewers = sent.get(npc.getUuid());
+        if (viewers != null) {
+            viewers.remove(player);
+        }
+    }
+
+    public void forget(UUID player) {
+        for (Map<UUID, Integer> viewers : sent.values()) {
+            viewers.remove(player);
+        }
+    }
+
+    public int getTrackedCount() {
+        return tracked.size();
+    }
+
+    /**
+     * Rotations sent to a viewer, a head and a body rotation packet each.
+     */
+    public long getUpdatesSent() {
+        return updatesSent.sum();
+    }
+
+    /**
+     * Viewer/NPC pairs in range whose angle bytes didn't change, nothing sent.
+     */
+    public long getUnchanged() {
+        return unchanged.sum();
+    }
+
+    /**
+     * NPCs left for the next pass because the budget was used up.
+     */
+    public long getDeferred() {
+        return deferred.sum();
+    }
+
+    public void tick() {
+        if (tracked.isEmpty()) return;
+
+        List<SpyNPC> npcs = new ArrayList<>(tracked.values());
+        Map<UUID, Location> eyes = new HashMap<>();
+        Map<UUID, PacketBatch> batches = new HashMap<>();
+        int budget = updatesPerPass;
+        int start = cursor % npcs.size();
+
+        for (int i = 0; i < npcs.size(); i++) {
+            int index = (start + i) % npcs.size();
+            budget -= update(npcs.get(index), budget, eyes, batches);
+            if (budget <= 0) {
+                // Carries on from here next time so NPCs late in the list don't starve
+                cursor = index;
+                deferred.add(npcs.size() - i - 1);
+                break;
+            }
+        }
+
+        for (PacketBatch batch : batches.values()) {
+            batch.flush();
+        }
+    }
+
+    /**
+     * @return how many rotations were sent
+     */
+    private int update(SpyNPC npc, int budget, Map<UUID, Location> eyes, Map<UUID, PacketBatch> batches) {
+        SpyNPC.Snapshot state = npc.getSnapshot();
+        Location loc = state.getLocation();
+        int own = pack(NPCPacketFactory.toAngle(loc.getYaw()), NPCPacketFactory.toAngle(loc.getPitch()));
+        Map<UUID, Integer> viewers = sent.computeIfAbsent(npc.getUuid(), k -> new ConcurrentHashMap<>());
+
+        int updates = 0;
+        for (UUID viewer : visibility.getViewers(npc.getUuid())) {
+            if (updates >= budget) break;
+
+            Location eye = eyes.computeIfAbsent(viewer, LookAtTracker::getEyeLocation);
+            int target = own;
+            if (state.isLookAt() && eye != null && eye.getWorld() == loc.getWorld()
+                    && eye.distanceSquared(loc) < radiusSquared) {
+                target = facing(loc, eye);
+            }
+
+            int current = viewers.getOrDefault(viewer, DEFAULT);
+            if ((current == DEFAULT ? own : current) == target) {
+                if (target != own) unchanged.increment();
+                continue;
+            }
+
+            Player player = Bukkit.getPlayer(viewer);
+            if (player == null) continue;
+            batches.computeIfAbsent(viewer, k -> new PacketBatch(player, bundlePackets, metrics))
+                    .addAll(packetFactory.createRotationPackets(npc.getEntityId(), (byte) (target >> 8), (byte) target));
+            if (target == own) {
+                viewers.remove(viewer);
+            } else {
+                viewers.put(viewer, target);
+            }
+            updates++;
+        }
+        updatesSent.add(updates);
+
+        // Turned off and facing nobody any more
+        if (!state.isLookAt() && viewers.isEmpty()) {
+            tracked.remove(npc.getUuid(), npc);
+            // Turned back on meanwhile
+            if (npc.isLookAt()) {
+                tracked.put(npc.getUuid(), npc);
+            }
+        }
+        // Dropped above, or removed while this pass ran
+        if (tracked.get(npc.getUuid()) != npc) {
+            sent.remove(npc.getUuid(), viewers);
+        }
+        return updates;
+    }
+
+    private static Location getEyeLocation(UUID viewer) {
+        Player player = Bukkit.getPlayer(viewer);
+        return player != null && player.isOnline() ? player.getEyeLocation() : null;
+    }
+
+    private static int facing(Location npcLoc, Location eye) {
+        double dx = eye.getX() - npcLoc.getX();
+        double dy = eye.getY() - (npcLoc.getY() + EYE_HEIGHT);
+        double dz = eye.getZ() - npcLoc.getZ();
+        float yaw = (float) Math.toDegrees(Math.atan2(-dx, dz));
+        float pitch = (float) Math.toDegrees(-Math.atan2(dy, Math.sqrt(dx * dx + dz * dz)));
+        return pack(NPCPacketFactory.toAngle(yaw), NPCPacketFactory.toAngle(pitch));
+    }
+
+    private static int pack(byte yaw, byte pitch) {
+        return (yaw << 8) | (pitch & 0xFF);
+    }
+}
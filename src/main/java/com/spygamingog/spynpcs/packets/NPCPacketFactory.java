@@ -0,0 +1,271 @@
+package com.spygamingog.spynpcs.packets;
+
+import com.comphenix.protocol.PacketType;
+import com.comphenix.protocol.events.PacketContainer;
+import com.comphenix.protocol.wrappers.*;
+import com.spygamingog.spynpcs.SpyNPCs;
+import com.spygamingog.spynpcs.models.SpyNPC;
+import org.bukkit.ChatColor;
+import org.bukkit.entity.EntityType;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Builds the packets needed to show an NPC and caches them per NPC, so spawning
+ * an NPC for many viewers replays the same containers instead of rebuilding them.
+ */
+public class NPCPacketFactory {
+    public static final boolean MANNEQUIN_SUPPORTED;
+    private static final PacketType PLAYER_INFO_TYPE;
+
+    private final SpyNPCs plugin;
+    private final Map<UUID, SpawnBundle> spawnBundles = new ConcurrentHashMap<>();
+
+    static {
+        boolean supported = false;
+        try {
+            EntityType.valueOf("MANNEQUIN");
+            supported = true;
+        } catch (IllegalArgumentException ignored) {}
+        MANNEQUIN_SUPPORTED = supported;
+
+        // Resolved once instead of on every player info packet
+        PacketType infoType = PacketType.Play.Server.PLAYER_INFO;
+        try {
+            java.lang.reflect.Field field = PacketType.Play.Server.class.getField("PLAYER_INFO_UPDATE");
+            infoType = (PacketType) field.get(null);
+        } catch (Exception ignored) {}
+        PLAYER_INFO_TYPE = infoType;
+    }
+
+    /**
+     * Everything needed to spawn one NPC for a viewer. The containers are shared
+     * between viewers and must not be modified after the bundle is built.
+     *
+     * @param version       snapshot appearance version of the NPC the bundle was built from
+     * @param packets       spawn sequence, in send order
+     * @param removeFromTab whether the tab entry has to be removed once the skin has loaded
+     */
+    public record SpawnBundle(long version, List<PacketContainer> packets, boolean removeFromTab) {}
+
+    public NPCPacketFactory(SpyNPCs plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * The bundle for the NPC's current snapshot. Bundles are keyed by the snapshot's
+     * appearance version, so a change to anything the packets show is picked up
+     * without explicit invalidation, and changing actions, view distance or look-at
+     * keeps the bundle.
+     */
+    public SpawnBundle getSpawnBundle(SpyNPC npc) {
+        SpyNPC.Snapshot state = npc.getSnapshot();
+        SpawnBundle cached = spawnBundles.get(npc.getUuid());
+        if (cached != null && cached.version() == state.getAppearanceVersion()) {
+            return cached;
+        }
+
+        SpawnBundle bundle = buildSpawnBundle(npc, state);
+        // Two threads may build at once, keep the newer one
+        spawnBundles.merge(npc.getUuid(), bundle, (old, built) -> old.version() >= built.version() ? old : built);
+        return bundle;
+    }
+
+    /**
+     * Drops the cached bundle to free it, e.g. when the NPC is removed.
+     */
+    public void invalidate(SpyNPC npc) {
+        spawnBundles.remove(npc.getUuid());
+    }
+
+    private SpawnBundle buildSpawnBundle(SpyNPC npc, SpyNPC.Snapshot state) {
+        EntityType type = state.getType();
+        boolean isMannequin = false;
+        if (type == EntityType.PLAYER && MANNEQUIN_SUPPORTED) {
+            type = EntityType.valueOf("MANNEQUIN");
+            isMannequin = true;
+        }
+
+        List<PacketContainer> packets = new ArrayList<>();
+
+        // 1. Player Info (only for real PLAYER type, Mannequin doesn't need it)
+        if (type == EntityType.PLAYER) {
+            try {
+                PacketContainer infoPacket = createPlayerInfoPacket(npc, state, EnumSet.of(
+                    EnumWrappers.PlayerInfoAction.ADD_PLAYER,
+                    EnumWrappers.PlayerInfoAction.UPDATE_LISTED,
+                    EnumWrappers.PlayerInfoAction.UPDATE_DISPLAY_NAME
+                ));
+                packets.add(infoPacket);
+            } catch (Exception e) {
+                plugin.getLogger().warning("Failed to create Player Info packet for NPC " + state.getName());
+            }
+        }
+
+        // 2. Spawn Entity
+        PacketContainer spawnPacket = new PacketContainer(PacketType.Play.Server.SPAWN_ENTITY);
+        spawnPacket.getIntegers().write(0, npc.getEntityId());
+        spawnPacket.getUUIDs().write(0, npc.getUuid());
+        spawnPacket.getEntityTypeModifier().write(0, type);
+        spawnPacket.getDoubles().write(0, state.getLocation().getX());
+        spawnPacket.getDoubles().write(1, state.getLocation().getY());
+        spawnPacket.getDoubles().write(2, state.getLocation().getZ());
+        spawnPacket.getIntegers().write(1, 0);
+        
+        byte yaw = toAngle(state.getLocation().getYaw());
+        byte pitch = toAngle(state.getLocation().getPitch());
+        if (pitch > 64) pitch = 64;
+        if (pitch < -64) pitch = -64;
+        
+        try {
+            spawnPacket.getBytes().write(0, pitch);
+            spawnPacket.getBytes().write(1, yaw);
+        } catch (Exception e) {
+            try {
+                spawnPacket.getBytes().write(0, yaw);
+                spawnPacket.getBytes().write(1, pitch);
+            } catch (Exception ignored) {}
+        }
+        packets.add(spawnPacket);
+        
+        // 3. Entity Metadata
+        PacketContainer metadataPacket = new PacketContainer(PacketType.Play.Server.ENTITY_METADATA);
+        metadataPacket.getIntegers().write(0, npc.getEntityId());
+        
+        List<WrappedDataValue> dataValues = new ArrayList<>();
+        // Basic Metadata
+        dataValues.add(new WrappedDataValue(0, WrappedDataWatcher.Registry.get(Byte.class), (byte) 0)); // No status effects
+        
+        if (isMannequin) {
+            dataValues.add(new WrappedDataValue(19, WrappedDataWatcher.Registry.get(Boolean.class), true)); // Immovable
+            dataValues.add(new WrappedDataValue(17, WrappedDataWatcher.Registry.get(Byte.class), (byte) 127)); // All skin layers
+            
+            String profileName = state.getLocalName() != null ? state.getLocalName() : state.getName();
+            WrappedGameProfile profile = new WrappedGameProfile(npc.getUuid(), ChatColor.stripColor(profileName));
+            if (state.getSkinValue() != null && state.getSkinSignature() != null) {
+                profile.getProperties().put("textures", new WrappedSignedProperty("textures", state.getSkinValue(), state.getSkinSignature()));
+            }
+            try {
+                dataValues.add(new WrappedDataValue(18, WrappedDataWatcher.Registry.get(WrappedGameProfile.class), profile));
+            } catch (Exception ignored) {}
+        } else if (state.getType() == EntityType.PLAYER) {
+            dataValues.add(new WrappedDataValue(17, WrappedDataWatcher.Registry.get(Byte.class), (byte) 127)); // Skin parts (Index 17 for 1.21.x Player)
+            dataValues.add(new WrappedDataValue(18, WrappedDataWatcher.Registry.get(Byte.class), (byte) 1)); // Main hand (Right)
+        } else {
+            try {
+                dataValues.add(new WrappedDataValue(2, WrappedDataWatcher.Registry.getChatComponentSerializer(true), 
+                        Optional.of(WrappedChatComponent.fromText(state.getName()).getHandle())));
+                dataValues.add(new WrappedDataValue(3, WrappedDataWatcher.Registry.get(Boolean.class), true));
+            } catch (Exception ignored) {}
+        }
+        
+        try {
+            metadataPacket.getDataValueCollectionModifier().write(0, dataValues);
+        } catch (Exception e) {
+            List<WrappedWatchableObject> watchables = new ArrayList<>();
+            for (WrappedDataValue value : dataValues) {
+                watchables.add(new WrappedWatchableObject(new WrappedDataWatcher.WrappedDataWatcherObject(value.getIndex(), value.getSerializer()), value.getValue()));
+            }
+            metadataPacket.getWatchableCollectionModifier().write(0, watchables);
+        }
+        packets.add(metadataPacket);
+
+        // 4. Head Rotation
+        PacketContainer headRotationPacket = new PacketContainer(PacketType.Play.Server.ENTITY_HEAD_ROTATION);
+        headRotationPacket.getIntegers().write(0, npc.getEntityId());
+        headRotationPacket.getBytes().write(0, yaw);
+        packets.add(headRotationPacket);
+
+        // 5. Attributes (Scale and Max Health)
+        if (state.getType() == EntityType.PLAYER || isMannequin) {
+            try {
+                PacketContainer attributesPacket = new PacketContainer(PacketType.Play.Server.UPDATE_ATTRIBUTES);
+                attributesPacket.getIntegers().write(0, npc.getEntityId());
+                List<WrappedAttribute> attributes = new ArrayList<>();
+                
+                // Max Health 1.0 to hide from mods
+                attributes.add(WrappedAttribute.newBuilder()
+                        .attributeKey("minecraft:generic.max_health")
+                        .baseValue(1.0)
+                        .build());
+                
+                // Scale 1.0
+                attributes.add(WrappedAttribute.newBuilder()
+                        .attributeKey("minecraft:scale")
+                        .baseValue(1.0)
+                        .build());
+                
+                attributesPacket.getAttributeCollectionModifier().write(0, attributes);
+                packets.add(attributesPacket);
+            } catch (Throwable ignored) {}
+        }
+
+        // 6. Tab removal for real player NPCs, scheduled by the caller (TabRemovalScheduler)
+        boolean removeFromTab = state.getType() == EntityType.PLAYER && !isMannequin;
+
+        return new SpawnBundle(state.getAppearanceVersion(), Collections.unmodifiableList(packets), removeFromTab);
+    }
+
+    /**
+     * Head and body rotation of an already spawned NPC. Not cached, unlike spawn
+     * bundles every viewer gets its own angles.
+     */
+    public List<PacketContainer> createRotationPackets(int entityId, byte yaw, byte pitch) {
+        PacketContainer headRotationPacket = new PacketContainer(PacketType.Play.Server.ENTITY_HEAD_ROTATION);
+        headRotationPacket.getIntegers().write(0, entityId);
+        headRotationPacket.getBytes().write(0, yaw);
+
+        PacketContainer lookPacket = new PacketContainer(PacketType.Play.Server.ENTITY_LOOK);
+        lookPacket.getIntegers().write(0, entityId);
+        lookPacket.getBytes().write(0, yaw);
+        lookPacket.getBytes().write(1, pitch);
+        lookPacket.getBooleans().write(0, true); // On ground
+        // hasRot, the client ignores the angles without it on versions that have the flag
+        if (lookPacket.getBooleans().size() > 1) {
+            lookPacket.getBooleans().write(1, true);
+        }
+        return List.of(headRotationPacket, lookPacket);
+    }
+
+    /**
+     * Degrees to the byte angles are sent as (1/256 of a turn), the same rounding for
+     * the spawn packet and later rotations so equal angles compare equal.
+     */
+    public static byte toAngle(float degrees) {
+        return (byte) (degrees * 256.0F / 360.0F);
+    }
+
+    private PacketContainer createPlayerInfoPacket(SpyNPC npc, SpyNPC.Snapshot state, EnumSet<EnumWrappers.PlayerInfoAction> actions) {
+        PacketContainer infoPacket = new PacketContainer(PLAYER_INFO_TYPE);
+        
+        try {
+            infoPacket.getPlayerInfoActions().write(0, actions);
+        } catch (Exception e) {
+            infoPacket.getPlayerInfoActions().write(0, EnumSet.of(EnumWrappers.PlayerInfoAction.ADD_PLAYER));
+        }
+        
+        // Use localName for the profile to isolate it from real players (similar to FancyNpcs)
+        // DO NOT strip color codes as they are part of the isolation strategy
+        String profileName = state.getLocalName() != null ? state.getLocalName() : state.getName();
+        WrappedGameProfile profile = new WrappedGameProfile(npc.getUuid(), profileName);
+        if (state.getSkinValue() != null && state.getSkinSignature() != null) {
+            profile.getProperties().put("textures", new WrappedSignedProperty("textures", state.getSkinValue(), state.getSkinSignature()));
+        }
+        
+        PlayerInfoData data;
+        try {
+            data = new PlayerInfoData(npc.getUuid(), 0, true, EnumWrappers.NativeGameMode.SURVIVAL, profile, WrappedChatComponent.fromText(state.getName()), (WrappedRemoteChatSessionData) null);
+        } catch (Throwable t) {
+            data = new PlayerInfoData(profile, 0, EnumWrappers.NativeGameMode.SURVIVAL, WrappedChatComponent.fromText(state.getName()));
+        }
+        
+        try {
+            infoPacket.getPlayerInfoDataLists().write(0, Collections.singletonList(data));
+        } catch (Exception e) {
+            infoPacket.getPlayerInfoDataLists().write(1, Collections.singletonList(data));
+        }
+        
+        return infoPacket;
+    }
+}
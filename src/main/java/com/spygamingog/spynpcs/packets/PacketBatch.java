@@ -0,0 +1,147 @@
+package com.spygamingog.spynpcs.packets;
+
+import com.comphenix.protocol.PacketType;
+import com.comphenix.protocol.ProtocolLibrary;
+import com.comphenix.protocol.events.PacketContainer;
+import com.spygamingog.spynpcs.SpyNPCs;
+import com.spygamingog.spynpcs.metrics.NPCMetrics;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Collects the packets of one visibility pass for a single player and writes them
+ * in one go: removals are merged into a single ENTITY_DESTROY / PLAYER_INFO_REMOVE,
+ * team entries into one SCOREBOARD_TEAM add and one remove, and everything is
+ * wrapped in a bundle packet (1.19.4+) so the client applies it in one frame and
+ * the channel only gets one write.
+ */
+public class PacketBatch {
+    // Client rejects bundles with more than 4096 packets
+    private static final int MAX_BUNDLE_SIZE = 4000;
+    private static volatile boolean bundlesSupported = PacketType.Play.Server.BUNDLE.isSupported();
+
+    private final Player player;
+    private final boolean useBundles;
+    private final NPCMetrics metrics;
+    private final List<Integer> destroyedEntities = new ArrayList<>();
+    private final List<UUID> removedInfos = new ArrayList<>();
+    private final List<String> addedTeamEntries = new ArrayList<>();
+    private final List<String> removedTeamEntries = new ArrayList<>();
+    private final List<PacketContainer> packets = new ArrayList<>();
+
+    public PacketBatch(Player player, boolean useBundles, NPCMetrics metrics) {
+        this.player = player;
+        this.useBundles = useBundles;
+        this.metrics = metrics;
+    }
+
+    public void add(PacketContainer packet) {
+        packets.add(packet);
+    }
+
+    public void addAll(Collection<PacketContainer> packets) {
+        this.packets.addAll(packets);
+    }
+
+    public void destroy(int entityId) {
+        destroyedEntities.add(entityId);
+    }
+
+    public void removeInfo(UUID uuid) {
+        removedInfos.add(uuid);
+    }
+
+    public void addTeamEntry(String entry) {
+        addedTeamEntries.add(entry);
+    }
+
+    public void removeTeamEntry(String entry) {
+        removedTeamEntries.add(entry);
+    }
+
+    public boolean isEmpty() {
+        return destroyedEntities.isEmpty() && removedInfos.isEmpty() && packets.isEmpty()
+                && addedTeamEntries.isEmpty() && removedTeamEntries.isEmpty();
+    }
+
+    public void flush() {
+        if (isEmpty()) return;
+
+        // Removals go first so a despawn + respawn of the same NPC (refresh) ends up visible
+        List<PacketContainer> ordered = new ArrayList<>(packets.size() + 4);
+        if (!destroyedEntities.isEmpty()) {
+            PacketContainer destroyPacket = new PacketContainer(PacketType.Play.Server.ENTITY_DESTROY);
+            destroyPacket.getIntLists().write(0, new ArrayList<>(destroyedEntities));
+            ordered.add(destroyPacket);
+        }
+        if (!removedInfos.isEmpty()) {
+            PacketContainer removeInfo = new PacketContainer(PacketType.Play.Server.PLAYER_INFO_REMOVE);
+            removeInfo.getUUIDLists().write(0, new ArrayList<>(removedInfos));
+            ordered.add(removeInfo);
+        }
+        if (!removedTeamEntries.isEmpty()) {
+            ordered.add(createTeamEntriesPacket(4, removedTeamEntries)); // 4 = REMOVE_ENTITIES
+        }
+        ordered.addAll(packets);
+        // After the spawns (and the team creation, which is queued as a normal packet)
+        if (!addedTeamEntries.isEmpty()) {
+            ordered.add(createTeamEntriesPacket(3, addedTeamEntries)); // 3 = ADD_ENTITIES
+        }
+
+        destroyedEntities.clear();
+        removedInfos.clear();
+        removedTeamEntries.clear();
+        addedTeamEntries.clear();
+        packets.clear();
+
+        if (metrics != null) {
+            for (PacketContainer packet : ordered) {
+                metrics.countPacket(packet.getType());
+            }
+        }
+
+        if (useBundles && bundlesSupported && ordered.size() > 1) {
+            if (sendBundled(ordered)) return;
+        }
+        for (PacketContainer packet : ordered) {
+            send(packet);
+        }
+    }
+
+    private static PacketContainer createTeamEntriesPacket(int mode, List<String> entries) {
+        PacketContainer teamPacket = new PacketContainer(PacketType.Play.Server.SCOREBOARD_TEAM);
+        teamPacket.getStrings().write(0, TeamTracker.TEAM_NAME);
+        teamPacket.getIntegers().write(0, mode);
+        teamPacket.getSpecificModifier(Collection.class).write(0, new ArrayList<>(entries));
+        return teamPacket;
+    }
+
+    private boolean sendBundled(List<PacketContainer> ordered) {
+        try {
+            for (int start = 0; start < ordered.size(); start += MAX_BUNDLE_SIZE) {
+                List<PacketContainer> part = ordered.subList(start, Math.min(ordered.size(), start + MAX_BUNDLE_SIZE));
+                PacketContainer bundle = new PacketContainer(PacketType.Play.Server.BUNDLE);
+                bundle.getPacketBundles().write(0, new ArrayList<>(part));
+                ProtocolLibrary.getProtocolManager().sendServerPacket(player, bundle);
+            }
+            return true;
+        } catch (Exception e) {
+            // Only fails if this ProtocolLib / server build can't create bundles, so stop trying
+            bundlesSupported = false;
+            SpyNPCs.getInstance().getLogger().warning("Bundle packets are not available, falling back to individual packets: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void send(PacketContainer packet) {
+        try {
+            ProtocolLibrary.getProtocolManager().sendServerPacket(player, packet);
+        } catch (Exception e) {
+            SpyNPCs.getInstance().getLogger().warning("Failed to send packet " + packet.getType() + " to " + player.getName());
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.spygamingog.spynpcs.packets;
+
+import com.spygamingog.spynpcs.metrics.NPCMetrics;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Takes PLAYER NPCs out of the tab list a while after they were spawned (the client
+ * needs the info entry long enough to load the skin). Instead of one scheduler task
+ * per NPC per player, removals go into a timer wheel with one slot per tick; a
+ * single task empties the due slot every tick and sends one PLAYER_INFO_REMOVE per
+ * player for everything that came due. A despawn already removes the info entry,
+ * so it cancels the pending removal.
+ */
+public class TabRemovalScheduler {
+    private final Plugin plugin;
+    private final long delayTicks;
+    private final NPCMetrics metrics;
+    private final int mask;
+    private final Queue<Removal>[] wheel;
+    // Player -> NPC -> tick its removal is due, a removal is only sent if it is still the pending one
+    private final Map<UUID, Map<UUID, Long>> pending = new ConcurrentHashMap<>();
+    private volatile long currentTick;
+
+    private record Removal(UUID player, UUID npc, long dueTick) {}
+
+    @SuppressWarnings("unchecked")
+    public TabRemovalScheduler(Plugin plugin, long delayTicks, NPCMetrics metrics) {
+        this.plugin = plugin;
+        this.metrics = metrics;
+        this.delayTicks = Math.max(1L, delayTicks);
+        // Power of two larger than the delay, so a slot never holds removals of two rounds.
+        // The size is capped; with a longer delay tick() puts removals back until they are due.
+        int size = Integer.highestOneBit((int) Math.min(1 << 16, this.delayTicks + 1)) << 1;
+        this.mask = size - 1;
+        this.wheel = new Queue[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new ConcurrentLinkedQueue<>();
+        }
+    }
+
+    public void start() {
+        Bukkit.getScheduler().runTaskTimer(plugin, this::tick, 1L, 1L);
+    }
+
+    /**
+     * Safe to call from any thread. Re-scheduling an NPC replaces its pending removal.
+     */
+    public void schedule(UUID player, UUID npc) {
+        long due = currentTick + delayTicks;
+        pending.computeIfAbsent(player, k -> new ConcurrentHashMap<>()).put(npc, due);
+        wheel[(int) (due & mask)].offer(new Removal(player, npc, due));
+    }
+
+    public void cancel(UUID player, UUID npc) {
+        Map<UUID, Long> playerPending = pending.get(player);
+        if (playerPending != null) {
+            playerPending.remove(npc);
+        }
+    }
+
+    public void forget(UUID player) {
+        pending.remove(player);
+    }
+
+    private void tick() {
+        long tick = ++currentTick;
+        Queue<Removal> slot = wheel[(int) (tick & mask)];
+        if (slot.isEmpty()) return;
+
+        Map<UUID, List<UUID>> due = new HashMap<>();
+        List<Removal> later = null;
+        Removal removal;
+        while ((removal = slot.poll()) != null) {
+            if (removal.dueTick() > tick) {
+                // Delay longer than the wheel, due in a later round
+                if (later == null) later = new ArrayList<>();
+                later.add(removal);
+                continue;
+            }
+            Map<UUID, Long> playerPending = pending.get(removal.player());
+            // Cancelled, re-scheduled or the player left
+            if (playerPending == null || !playerPending.remove(removal.npc(), removal.dueTick())) continue;
+            due.computeIfAbsent(removal.player(), k -> new ArrayList<>()).add(removal.npc());
+        }
+        if (later != null) {
+            slot.addAll(later);
+        }
+
+        for (Map.Entry<UUID, List<UUID>> entry : due.entrySet()) {
+            Player player = Bukkit.getPlayer(entry.getKey());
+            if (player == null || !player.isOnline()) continue;
+
+            PacketBatch batch = new PacketBatch(player, false, metrics);
+            for (UUID npc : entry.getValue()) {
+                batch.removeInfo(npc);
+            }
+            batch.flush();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.spygamingog.spynpcs.packets;
+
+import com.comphenix.protocol.PacketType;
+import com.comphenix.protocol.events.PacketContainer;
+import com.comphenix.protocol.wrappers.WrappedChatComponent;
+import com.comphenix.protocol.wrappers.WrappedTeamParameters;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers what each client knows about the shared no-collision team: whether the
+ * team was created this session and which entries are in it. The team is created
+ * once per player instead of on every spawn, entries are only added when missing
+ * and only removed when present (the client errors on removing unknown entries).
+ */
+public class TeamTracker {
+    public static final String TEAM_NAME = "npc_team";
+
+    // Player -> entries currently in the player's copy of the team
+    private final Map<UUID, Set<String>> entries = new ConcurrentHashMap<>();
+    private volatile PacketContainer createPacket;
+
+    public void addEntry(UUID player, String entry, PacketBatch batch) {
+        if (entry == null) return;
+
+        Set<String> playerEntries = entries.get(player);
+        if (playerEntries == null) {
+            Set<String> created = ConcurrentHashMap.newKeySet();
+            playerEntries = entries.putIfAbsent(player, created);
+            if (playerEntries == null) {
+                playerEntries = created;
+                PacketContainer create = getCreatePacket();
+                if (create != null) {
+                    batch.add(create);
+                }
+            }
+        }
+        if (playerEntries.add(entry)) {
+            batch.addTeamEntry(entry);
+        }
+    }
+
+    public void removeEntry(UUID player, String entry, PacketBatch batch) {
+        if (entry == null) return;
+
+        Set<String> playerEntries = entries.get(player);
+        if (playerEntries != null && playerEntries.remove(entry)) {
+            batch.removeTeamEntry(entry);
+        }
+    }
+
+    public void forget(UUID player) {
+        entries.remove(player);
+    }
+
+    // Same for every player, so it is built once and shared
+    private PacketContainer getCreatePacket() {
+        PacketContainer packet = createPacket;
+        if (packet != null) return packet;
+
+        // Unique team for all NPCs to hide nametags and disable collisions
+        packet = new PacketContainer(PacketType.Play.Server.SCOREBOARD_TEAM);
+        packet.getStrings().write(0, TEAM_NAME); // Team Name
+        packet.getIntegers().write(0, 0); // Action: 0 (Create)
+        try {
+            packet.getSpecificModifier(WrappedTeamParameters.class).write(0, WrappedTeamParameters.newBuilder()
+                    .displayName(WrappedChatComponent.fromText("NPCs"))
+                    .collisionRule("never")
+                    .nametagVisibility("never") // Hide the random localName
+                    .prefix(WrappedChatComponent.fromText(""))
+                    .suffix(WrappedChatComponent.fromText(""))
+                    .build());
+        } catch (Exception ignored) {
+            return null;
+        }
+        createPacket = packet;
+        return packet;
+    }
+}
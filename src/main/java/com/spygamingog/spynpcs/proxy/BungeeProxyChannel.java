@@ -0,0 +1,26 @@
+package com.spygamingog.spynpcs.proxy;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * The real "BungeeCord" plugin message channel, understood by BungeeCord and Velocity.
+ */
+public class BungeeProxyChannel implements ProxyChannel {
+    public static final String CHANNEL = "BungeeCord";
+
+    private final Plugin plugin;
+
+    public BungeeProxyChannel(Plugin plugin, ServerConnector connector) {
+        this.plugin = plugin;
+        Bukkit.getMessenger().registerOutgoingPluginChannel(plugin, CHANNEL);
+        Bukkit.getMessenger().registerIncomingPluginChannel(plugin, CHANNEL,
+                (channel, player, message) -> connector.handleResponse(message));
+    }
+
+    @Override
+    public void send(Player player, byte[] message) {
+        player.sendPluginMessage(plugin, CHANNEL, message);
+    }
+}
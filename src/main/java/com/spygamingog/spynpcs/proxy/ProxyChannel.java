@@ -0,0 +1,16 @@
+package com.spygamingog.spynpcs.proxy;
+
+import org.bukkit.entity.Player;
+
+/**
+ * Sends plugin messages to the proxy. Split out so the connector can be driven
+ * by a stand-in channel instead of a real BungeeCord/Velocity proxy.
+ */
+public interface ProxyChannel {
+
+    /**
+     * Sends a message over the BungeeCord channel through the given player's connection.
+     * Must be safe to call from any thread.
+     */
+    void send(Player player, byte[] message);
+}
@@ -0,0 +1,111 @@
+package com.spygamingog.spynpcs.proxy;
+
+import org.bukkit.ChatColor;
+import org.bukkit.entity.Player;
+
+import java.io.*;
+import java.util.*;
+import java.util.logging.Logger;
+
+/**
+ * Sends players to other servers for the SERVER action.
+ * <p>
+ * Servers with a configured address use the 1.20.5+ native transfer, everything
+ * else goes through the proxy's {@code Connect} message. The list of servers the
+ * proxy knows is refreshed in the background with {@code GetServers}, so a click
+ * only checks a cached set and never waits for the proxy.
+ */
+public class ServerConnector {
+    private final Logger logger;
+    private final Map<String, TransferTarget> transfers;
+    private volatile ProxyChannel channel;
+    // Lowercased name -> name as the proxy reported it. Empty until the proxy answered
+    // once, in which case every server is assumed to exist.
+    private volatile Map<String, String> knownServers = Collections.emptyMap();
+
+    /**
+     * Address a server is reached at with a native transfer.
+     */
+    public record TransferTarget(String host, int port) {}
+
+    public ServerConnector(Logger logger, Map<String, TransferTarget> transfers) {
+        this.logger = logger;
+        this.transfers = new HashMap<>();
+        transfers.forEach((server, address) -> this.transfers.put(server.toLowerCase(), address));
+    }
+
+    public void setChannel(ProxyChannel channel) {
+        this.channel = channel;
+    }
+
+    public void connect(Player player, String server) {
+        TransferTarget transfer = transfers.get(server.toLowerCase());
+        if (transfer != null) {
+            player.transfer(transfer.host(), transfer.port());
+            return;
+        }
+
+        if (channel == null) {
+            logger.warning("Can't send " + player.getName() + " to " + server + ", no proxy channel is set up.");
+            return;
+        }
+
+        // Actions are typed by hand, match them case-insensitively and send the proxy's spelling
+        Map<String, String> known = knownServers;
+        String target = server;
+        if (!known.isEmpty()) {
+            target = known.get(server.toLowerCase());
+            if (target == null) {
+                player.sendMessage(ChatColor.RED + "Server " + server + " is not available right now.");
+                return;
+            }
+        }
+
+        channel.send(player, write("Connect", target));
+    }
+
+    /**
+     * Asks the proxy for its server list through any online player. The answer
+     * arrives later through {@link #handleResponse(byte[])}.
+     */
+    public void refresh(Collection<? extends Player> onlinePlayers) {
+        ProxyChannel current = channel;
+        if (current == null || onlinePlayers.isEmpty()) return;
+        current.send(onlinePlayers.iterator().next(), write("GetServers"));
+    }
+
+    /**
+     * Handles a message received on the BungeeCord channel.
+     */
+    public void handleResponse(byte[] message) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(message))) {
+            if (!in.readUTF().equals("GetServers")) return;
+
+            Map<String, String> servers = new HashMap<>();
+            for (String server : in.readUTF().split(",")) {
+                if (!server.isBlank()) {
+                    servers.put(server.trim().toLowerCase(), server.trim());
+                }
+            }
+            knownServers = Collections.unmodifiableMap(servers);
+        } catch (IOException ignored) {
+            // Not a message we understand
+        }
+    }
+
+    public Collection<String> getKnownServers() {
+        return knownServers.values();
+    }
+
+    private static byte[] write(String... values) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            for (String value : values) {
+                out.writeUTF(value);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,393 @@
+package com.spygamingog.spynpcs.storage;
+
+import com.spygamingog.spynpcs.utils.IOUtils;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
+
+/**
+ * All NPCs in a single compact binary file.
+ * <p>
+ * Layout: magic, version, a table of distinct skins (value + signature, so NPCs
+ * sharing a skin store the base64 blob once), an index of (uuid, record offset),
+ * then the records. Integers are varints, strings are varint length + UTF-8.
+ * The file is read into memory in one go on load and the records are decoded in
+ * parallel using the index. It isn't memory-mapped: a mapping stays until it is
+ * garbage collected and keeps the file from being replaced on Windows. Every
+ * flush rewrites the whole file through a temp file and an atomic rename.
+ * <p>
+ * Version 2 added the look-at flag after the view distance; version 1 files
+ * still load and are written as version 2 on the next flush.
+ * <p>
+ * A record that can't be decoded is skipped like a bad JSON file. Since the next
+ * flush would drop it for good, the file is copied aside first. If the header or
+ * index can't be read the store turns read-only, so the NPCs still in the file
+ * are never overwritten by the few that were saved since.
+ */
+public class BinaryNPCStorage implements NPCStorage {
+    private static final int MAGIC = 0x534E5043; // "SNPC"
+    private static final int VERSION = 2;
+
+    private final File file;
+    private final Logger logger;
+    private final Map<UUID, NPCData> records = new ConcurrentHashMap<>();
+    private volatile boolean dirty;
+    // Set when the file couldn't be read (or backed up), flush() leaves it alone then
+    private volatile boolean readOnly;
+
+    public BinaryNPCStorage(File file, Logger logger) {
+        this.file = file;
+        this.logger = logger;
+    }
+
+    public boolean exists() {
+        return file.exists();
+    }
+
+    /**
+     * One-shot import of another storage (the JSON folder), written out immediately.
+     *
+     * @return how many NPCs were migrated
+     */
+    public int migrateFrom(NPCStorage source, int threads) {
+        LoadResult result = source.load(threads);
+        for (NPCData data : result.npcs()) {
+            records.put(UUID.fromString(data.getUuid()), data);
+        }
+        dirty = true;
+        flush();
+        return result.npcs().size();
+    }
+
+    @Override
+    public LoadResult load(int threads) {
+        records.clear();
+        readOnly = false;
+        if (!file.exists()) {
+            return new LoadResult(Collections.emptyList(), 0, 0L, 0L);
+        }
+
+        long start = System.nanoTime();
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("not a SpyNPCs binary store");
+            }
+            int version = readVarInt(buffer);
+            if (version < 1 || version > VERSION) {
+                throw new IOException("unsupported store version " + version);
+            }
+
+            int skinCount = readVarInt(buffer);
+            String[][] skins = new String[skinCount][];
+            for (int i = 0; i < skinCount; i++) {
+                skins[i] = new String[]{readString(buffer), readString(buffer)};
+            }
+
+            int count = readVarInt(buffer);
+            int[] offsets = new int[count];
+            for (int i = 0; i < count; i++) {
+                buffer.getLong(); // uuid, most significant bits
+                buffer.getLong(); // uuid, least significant bits
+                offsets[i] = readVarInt(buffer);
+            }
+            int recordsStart = buffer.position();
+            long indexed = System.nanoTime();
+
+            int poolSize = Math.max(1, Math.min(count, threads > 0 ? threads : Runtime.getRuntime().availableProcessors()));
+            List<NPCData> loaded = decodeAll(buffer, version, recordsStart, offsets, skins, poolSize);
+            for (NPCData data : loaded) {
+                records.put(UUID.fromString(data.getUuid()), data);
+            }
+
+            long parsed = System.nanoTime();
+            if (loaded.size() < count) {
+                logger.severe((count - loaded.size()) + " of " + count + " NPCs in " + file.getName()
+                        + " could not be read and will be dropped from it on the next save.");
+                if (!preserveCorrupt()) {
+                    readOnly = true;
+                }
+            }
+            return new LoadResult(loaded, poolSize, (indexed - start) / 1_000_000L, (parsed - indexed) / 1_000_000L);
+        } catch (Exception e) {
+            // Header or index unreadable, nothing tells which NPCs are in there
+            logger.severe("Could not load NPCs from " + file.getName() + ": " + e
+                    + ". NPC changes will not be saved until the file is repaired or removed.");
+            preserveCorrupt();
+            readOnly = true;
+            return new LoadResult(Collections.emptyList(), 0, 0L, 0L);
+        }
+    }
+
+    /**
+     * Copies the file as it is now next to it (npcs.bin.corrupt-&lt;time&gt;).
+     *
+     * @return false if the copy failed
+     */
+    private boolean preserveCorrupt() {
+        Path copy = new File(file.getParentFile(), file.getName() + ".corrupt-" + System.currentTimeMillis()).toPath();
+        try {
+            Files.copy(file.toPath(), copy, StandardCopyOption.REPLACE_EXISTING);
+            logger.severe("The unreadable file was copied to " + copy.getFileName() + ".");
+            return true;
+        } catch (IOException e) {
+            logger.severe("Could not copy " + file.getName() + " aside, it will not be overwritten: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private List<NPCData> decodeAll(ByteBuffer buffer, int version, int recordsStart, int[] offsets, String[][] skins, int poolSize) {
+        if (offsets.length == 0) return Collections.emptyList();
+
+        ExecutorService pool = Executors.newFixedThreadPool(poolSize, IOUtils.daemonThreads("SpyNPCs-Loader"));
+        try {
+            // Each thread decodes a contiguous slice of the index with its own view of the buffer
+            int sliceSize = (offsets.length + poolSize - 1) / poolSize;
+            List<CompletableFuture<List<NPCData>>> futures = new ArrayList<>(poolSize);
+            for (int from = 0; from < offsets.length; from += sliceSize) {
+                int sliceFrom = from;
+                int sliceTo = Math.min(offsets.length, from + sliceSize);
+                futures.add(CompletableFuture.supplyAsync(() -> {
+                    ByteBuffer view = buffer.duplicate();
+                    List<NPCData> slice = new ArrayList<>(sliceTo - sliceFrom);
+                    for (int i = sliceFrom; i < sliceTo; i++) {
+                        NPCData data = decode(view, recordsStart + offsets[i], version, skins, i);
+                        if (data != null) {
+                            slice.add(data);
+                        }
+                    }
+                    return slice;
+                }, pool));
+            }
+
+            List<NPCData> loaded = new ArrayList<>(offsets.length);
+            for (CompletableFuture<List<NPCData>> future : futures) {
+                loaded.addAll(future.join());
+            }
+            return loaded;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * One record, null (and logged) if it can't be read so the others still load.
+     */
+    private NPCData decode(ByteBuffer view, int position, int version, String[][] skins, int index) {
+        try {
+            view.position(position);
+            NPCData data = readRecord(view, version, skins);
+            if (data.getType() == null || data.getLocation().getWorld() == null) {
+                logger.warning("Skipping invalid NPC record #" + index + " in " + file.getName() + " (missing type or world)");
+                return null;
+            }
+            return data;
+        } catch (RuntimeException e) {
+            logger.severe("Could not load NPC record #" + index + " from " + file.getName() + ": " + e);
+            return null;
+        }
+    }
+
+    @Override
+    public void save(NPCData data) {
+        records.put(UUID.fromString(data.getUuid()), data);
+        dirty = true;
+    }
+
+    @Override
+    public void delete(UUID uuid) {
+        if (records.remove(uuid) != null) {
+            dirty = true;
+        }
+    }
+
+    @Override
+    public void flush() {
+        // Changes stay in memory only, see readOnly
+        if (!dirty || readOnly) return;
+        dirty = false;
+
+        List<NPCData> npcs = new ArrayList<>(records.values());
+        try {
+            IOUtils.writeAtomically(file.toPath(), out -> write(out, npcs));
+        } catch (IOException e) {
+            dirty = true;
+            logger.severe("Could not save NPCs to " + file.getName() + ": " + e.getMessage());
+        }
+    }
+
+    private static void write(OutputStream stream, List<NPCData> npcs) throws IOException {
+        Map<String, Integer> skinIds = new HashMap<>();
+        List<String[]> skins = new ArrayList<>();
+        int[] offsets = new int[npcs.size()];
+
+        ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(npcs.size() * 128);
+        DataOutputStream recordOut = new DataOutputStream(recordBytes);
+        for (int i = 0; i < npcs.size(); i++) {
+            offsets[i] = recordOut.size();
+            writeRecord(recordOut, npcs.get(i), skinIds, skins);
+        }
+        recordOut.flush();
+
+        DataOutputStream out = new DataOutputStream(stream);
+        out.writeInt(MAGIC);
+        writeVarInt(out, VERSION);
+
+        writeVarInt(out, skins.size());
+        for (String[] skin : skins) {
+            writeString(out, skin[0]);
+            writeString(out, skin[1]);
+        }
+
+        writeVarInt(out, npcs.size());
+        for (int i = 0; i < npcs.size(); i++) {
+            UUID uuid = UUID.fromString(npcs.get(i).getUuid());
+            out.writeLong(uuid.getMostSignificantBits());
+            out.writeLong(uuid.getLeastSignificantBits());
+            writeVarInt(out, offsets[i]);
+        }
+
+        recordBytes.writeTo(out);
+        out.flush();
+    }
+
+    private static void writeRecord(DataOutputStream out, NPCData data, Map<String, Integer> skinIds, List<String[]> skins) throws IOException {
+        UUID uuid = UUID.fromString(data.getUuid());
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+        writeVarInt(out, (data.getEntityId() << 1) ^ (data.getEntityId() >> 31)); // zigzag
+        writeString(out, data.getName());
+        writeString(out, data.getLocalName());
+        writeString(out, data.getType());
+        writeString(out, data.getSkinName());
+
+        // 0 = no skin, otherwise index + 1 into the skin table
+        if (data.getSkinValue() == null && data.getSkinSignature() == null) {
+            writeVarInt(out, 0);
+        } else {
+            String key = data.getSkinValue() + '\n' + data.getSkinSignature();
+            Integer id = skinIds.get(key);
+            if (id == null) {
+                id = skins.size();
+                skinIds.put(key, id);
+                skins.add(new String[]{data.getSkinValue(), data.getSkinSignature()});
+            }
+            writeVarInt(out, id + 1);
+        }
+
+        out.writeBoolean(data.getViewDistance() != null);
+        if (data.getViewDistance() != null) {
+            out.writeDouble(data.getViewDistance());
+        }
+        out.writeBoolean(data.isLookAt());
+
+        NPCData.LocationData loc = data.getLocation();
+        writeString(out, loc.getWorld());
+        out.writeDouble(loc.getX());
+        out.writeDouble(loc.getY());
+        out.writeDouble(loc.getZ());
+        out.writeFloat(loc.getYaw());
+        out.writeFloat(loc.getPitch());
+
+        List<NPCData.ActionData> actions = data.getActions() != null ? data.getActions() : Collections.emptyList();
+        writeVarInt(out, actions.size());
+        for (NPCData.ActionData action : actions) {
+            writeString(out, action.getType());
+            writeString(out, action.getValue());
+        }
+    }
+
+    private static NPCData readRecord(ByteBuffer in, int version, String[][] skins) {
+        NPCData data = new NPCData();
+        data.setUuid(new UUID(in.getLong(), in.getLong()).toString());
+        int entityId = readVarInt(in);
+        data.setEntityId((entityId >>> 1) ^ -(entityId & 1));
+        data.setName(readString(in));
+        data.setLocalName(readString(in));
+        data.setType(readString(in));
+        data.setSkinName(readString(in));
+
+        int skin = readVarInt(in);
+        if (skin > 0) {
+            data.setSkinValue(skins[skin - 1][0]);
+            data.setSkinSignature(skins[skin - 1][1]);
+        }
+
+        if (in.get() != 0) {
+            data.setViewDistance(in.getDouble());
+        }
+        if (version >= 2) {
+            data.setLookAt(in.get() != 0);
+        }
+
+        NPCData.LocationData loc = new NPCData.LocationData();
+        loc.setWorld(readString(in));
+        loc.setX(in.getDouble());
+        loc.setY(in.getDouble());
+        loc.setZ(in.getDouble());
+        loc.setYaw(in.getFloat());
+        loc.setPitch(in.getFloat());
+        data.setLocation(loc);
+
+        int actionCount = readVarInt(in);
+        List<NPCData.ActionData> actions = new ArrayList<>(actionCount);
+        for (int i = 0; i < actionCount; i++) {
+            NPCData.ActionData action = new NPCData.ActionData();
+            action.setType(readString(in));
+            action.setValue(readString(in));
+            actions.add(action);
+        }
+        data.setActions(actions);
+        return data;
+    }
+
+    private static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(ByteBuffer in) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (shift >= 35) throw new IllegalStateException("VarInt too long");
+            b = in.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    // Length + 1 so that 0 can mean null
+    private static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length + 1);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = readVarInt(in) - 1;
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
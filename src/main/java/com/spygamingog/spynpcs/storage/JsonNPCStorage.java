@@ -0,0 +1,135 @@
+package com.spygamingog.spynpcs.storage;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonReader;
+import com.spygamingog.spynpcs.utils.IOUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
+
+/**
+ * One pretty-printed JSON file per NPC in the npcs folder.
+ */
+public class JsonNPCStorage implements NPCStorage {
+    private final File folder;
+    private final Logger logger;
+    private final Gson gson;
+
+    public JsonNPCStorage(File folder, Logger logger) {
+        this.folder = folder;
+        this.logger = logger;
+        this.gson = new GsonBuilder()
+                .setPrettyPrinting()
+                .disableHtmlEscaping()
+                .create();
+        if (!folder.exists()) {
+            folder.mkdirs();
+        }
+    }
+
+    /**
+     * Parses every NPC file in parallel. Files that can't be read are logged and skipped,
+     * turning the data into NPCs is left to the caller on the main thread.
+     */
+    @Override
+    public LoadResult load(int threads) {
+        long start = System.nanoTime();
+        File[] files = folder.listFiles((dir, name) -> name.endsWith(".json"));
+        long listed = System.nanoTime();
+        if (files == null || files.length == 0) {
+            return new LoadResult(Collections.emptyList(), 0, (listed - start) / 1_000_000L, 0L);
+        }
+
+        int poolSize = Math.max(1, Math.min(files.length, threads > 0 ? threads : Runtime.getRuntime().availableProcessors()));
+        ExecutorService pool = Executors.newFixedThreadPool(poolSize, IOUtils.daemonThreads("SpyNPCs-Loader"));
+
+        List<NPCData> loaded = new ArrayList<>(files.length);
+        try {
+            List<CompletableFuture<NPCData>> futures = new ArrayList<>(files.length);
+            for (File file : files) {
+                futures.add(CompletableFuture.supplyAsync(() -> read(file), pool));
+            }
+            for (CompletableFuture<NPCData> future : futures) {
+                NPCData data = future.join();
+                if (data != null) {
+                    loaded.add(data);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        long parsed = System.nanoTime();
+        return new LoadResult(loaded, poolSize, (listed - start) / 1_000_000L, (parsed - listed) / 1_000_000L);
+    }
+
+    private NPCData read(File file) {
+        try (JsonReader reader = new JsonReader(Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8))) {
+            NPCData data = gson.fromJson(reader, NPCData.class);
+            if (data == null) {
+                logger.warning("Skipping empty NPC file: " + file.getName());
+                return null;
+            }
+            if (data.getUuid() == null) {
+                logger.warning("Skipping invalid NPC file (missing UUID): " + file.getName());
+                return null;
+            }
+            if (data.getType() == null) {
+                logger.warning("Skipping invalid NPC file (missing type): " + file.getName());
+                return null;
+            }
+            if (data.getLocation() == null) {
+                logger.warning("Skipping invalid NPC file (missing location): " + file.getName());
+                return null;
+            }
+            if (data.getLocation().getWorld() == null) {
+                logger.warning("Skipping invalid NPC file (missing world): " + file.getName());
+                return null;
+            }
+            return data;
+        } catch (Exception e) {
+            logger.severe("Could not load NPC from " + file.getName() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Writes to a temp file first and renames it over the old one, so a crash
+     * mid-write never leaves a truncated file behind.
+     */
+    @Override
+    public void save(NPCData data) {
+        Path target = new File(folder, data.getUuid() + ".json").toPath();
+        try {
+            IOUtils.writeAtomically(target, out -> {
+                Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+                gson.toJson(data, writer);
+                writer.flush();
+            });
+        } catch (IOException e) {
+            logger.severe("Could not save NPC " + data.getName() + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void delete(UUID uuid) {
+        File file = new File(folder, uuid.toString() + ".json");
+        if (file.exists()) {
+            file.delete();
+        }
+    }
+}
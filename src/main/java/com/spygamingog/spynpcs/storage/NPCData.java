@@ -0,0 +1,82 @@
+package com.spygamingog.spynpcs.storage;
+
+import com.spygamingog.spynpcs.models.SpyNPC;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.bukkit.Location;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Plain copy of an NPC's persistent state, in the same layout as the JSON files.
+ * Taken on the main thread so the NPC can keep changing while this is written out.
+ */
+@Data
+@NoArgsConstructor
+public class NPCData {
+    private String uuid;
+    private int entityId;
+    private String name;
+    private String localName;
+    private String type;
+    private String skinName;
+    private String skinValue;
+    private String skinSignature;
+    private Double viewDistance;
+    private boolean lookAt;
+    private LocationData location;
+    private List<ActionData> actions = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    public static class LocationData {
+        private String world;
+        private double x;
+        private double y;
+        private double z;
+        private float yaw;
+        private float pitch;
+    }
+
+    @Data
+    @NoArgsConstructor
+    public static class ActionData {
+        private String type;
+        private String value;
+    }
+
+    public static NPCData from(SpyNPC npc) {
+        // One snapshot, so the copy is consistent even if the NPC changes meanwhile
+        SpyNPC.Snapshot state = npc.getSnapshot();
+        NPCData data = new NPCData();
+        data.uuid = npc.getUuid().toString();
+        data.entityId = npc.getEntityId();
+        data.name = state.getName();
+        data.localName = state.getLocalName();
+        data.type = state.getType().name();
+        data.skinName = state.getSkinName();
+        data.skinValue = state.getSkinValue();
+        data.skinSignature = state.getSkinSignature();
+        data.viewDistance = state.getViewDistance();
+        data.lookAt = state.isLookAt();
+
+        Location loc = state.getLocation();
+        LocationData locationData = new LocationData();
+        locationData.world = loc.getWorld().getName();
+        locationData.x = loc.getX();
+        locationData.y = loc.getY();
+        locationData.z = loc.getZ();
+        locationData.yaw = loc.getYaw();
+        locationData.pitch = loc.getPitch();
+        data.location = locationData;
+
+        for (SpyNPC.NPCAction action : state.getActions()) {
+            ActionData actionData = new ActionData();
+            actionData.type = action.getType().name();
+            actionData.value = action.getValue();
+            data.actions.add(actionData);
+        }
+        return data;
+    }
+}
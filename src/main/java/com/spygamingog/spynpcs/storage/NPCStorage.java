@@ -0,0 +1,36 @@
+package com.spygamingog.spynpcs.storage;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Where NPC definitions are kept on disk. Saves and deletes are only called from
+ * the persistence thread, loading happens once at startup.
+ */
+public interface NPCStorage {
+
+    /**
+     * Result of {@link #load(int)} with the time spent on each phase.
+     *
+     * @param npcs        everything that could be read
+     * @param threads     how many threads were used for parsing
+     * @param indexMillis time spent finding the records (listing files, reading the index)
+     * @param parseMillis time spent parsing the records
+     */
+    record LoadResult(List<NPCData> npcs, int threads, long indexMillis, long parseMillis) {}
+
+    /**
+     * Reads every stored NPC, using up to the given number of threads (0 = one per core).
+     * Unreadable entries are logged and skipped.
+     */
+    LoadResult load(int threads);
+
+    void save(NPCData data);
+
+    void delete(UUID uuid);
+
+    /**
+     * Called after a batch of saves and deletes, for backends that write in bulk.
+     */
+    default void flush() {}
+}
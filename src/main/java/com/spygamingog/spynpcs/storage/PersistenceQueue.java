@@ -0,0 +1,105 @@
+package com.spygamingog.spynpcs.storage;
+
+import com.spygamingog.spynpcs.metrics.Histogram;
+import com.spygamingog.spynpcs.utils.IOUtils;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+/**
+ * Write-behind queue in front of the storage. Saves and deletes are only recorded,
+ * repeated edits of the same NPC within the delay collapse into one write, and the
+ * actual IO happens on a dedicated thread.
+ */
+public class PersistenceQueue {
+    private final NPCStorage storage;
+    private final Logger logger;
+    private final long delayMillis;
+    private final Histogram flushTimes;
+    private final ScheduledThreadPoolExecutor executor;
+    // Latest pending state per NPC, empty means the NPC has to be deleted
+    private final Map<UUID, Optional<NPCData>> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    public PersistenceQueue(NPCStorage storage, Logger logger, long delayMillis, Histogram flushTimes) {
+        this.storage = storage;
+        this.logger = logger;
+        this.delayMillis = Math.max(0L, delayMillis);
+        this.flushTimes = flushTimes;
+        this.executor = new ScheduledThreadPoolExecutor(1, IOUtils.daemonThreads("SpyNPCs-Persistence"));
+        // Don't sit out the coalescing delay when shutting down, shutdown() flushes itself
+        this.executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    public void save(NPCData data) {
+        pending.put(UUID.fromString(data.getUuid()), Optional.of(data));
+        scheduleFlush();
+    }
+
+    public void delete(UUID uuid) {
+        pending.put(uuid, Optional.empty());
+        scheduleFlush();
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    private void scheduleFlush() {
+        if (executor.isShutdown()) return;
+        if (flushScheduled.compareAndSet(false, true)) {
+            executor.schedule(this::flush, delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flush() {
+        // Anything queued from here on schedules another flush
+        flushScheduled.set(false);
+        long start = System.nanoTime();
+        for (UUID uuid : pending.keySet()) {
+            Optional<NPCData> entry = pending.remove(uuid);
+            if (entry == null) continue;
+
+            try {
+                if (entry.isPresent()) {
+                    storage.save(entry.get());
+                } else {
+                    storage.delete(uuid);
+                }
+            } catch (Exception e) {
+                logger.severe("Could not persist NPC " + uuid + ": " + e.getMessage());
+            }
+        }
+
+        try {
+            storage.flush();
+        } catch (Exception e) {
+            logger.severe("Could not write NPC storage: " + e.getMessage());
+        }
+        flushTimes.record((System.nanoTime() - start) / 1_000_000L);
+    }
+
+    /**
+     * Writes everything still pending and stops the writer thread, waiting at most
+     * the given time. Whatever can't be written in time is reported and dropped.
+     */
+    public void shutdown(long timeoutMillis) {
+        executor.execute(this::flush);
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                logger.warning("Timed out saving NPCs, " + pending.size() + " NPC(s) were not saved.");
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.spygamingog.spynpcs.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * File writing and threading bits shared by the storage backends and the metrics
+ * exporter.
+ */
+public final class IOUtils {
+
+    @FunctionalInterface
+    public interface Content {
+        /**
+         * Writes the file's content. Flush any writer wrapped around the stream, don't close it.
+         */
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    private IOUtils() {
+    }
+
+    /**
+     * Writes the content to a temp file next to the target and renames it over the
+     * target, atomically where the file system supports it, so readers never see
+     * half a file. The temp file is synced to disk before the rename, or a power
+     * loss could leave the renamed file empty.
+     */
+    public static void writeAtomically(Path target, Content content) throws IOException {
+        Path parent = target.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel));
+            content.writeTo(out);
+            out.flush();
+            channel.force(true);
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Daemon threads with the given name, so a stuck pool never keeps the server from stopping.
+     */
+    public static ThreadFactory daemonThreads(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,110 @@
+package com.spygamingog.spynpcs.utils;
+
+import java.util.Map;
+
+/**
+ * Int-keyed open addressing map built for lookups from Netty threads.
+ * <p>
+ * Reads never lock or allocate: they probe an immutable table published through
+ * a volatile field. Writes copy the table under a lock and swap it in, which is
+ * fine because NPCs are created and removed rarely compared to how often the
+ * packet listener looks them up.
+ */
+public class IntObjectMap<V> {
+    private static final int MIN_CAPACITY = 16;
+
+    private volatile Table table = new Table(new int[MIN_CAPACITY], new Object[MIN_CAPACITY], 0);
+
+    // A null value marks an empty slot, so null values can't be stored
+    private record Table(int[] keys, Object[] values, int size) {}
+
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        Table current = table;
+        int[] keys = current.keys;
+        Object[] values = current.values;
+        int mask = keys.length - 1;
+
+        int index = mix(key) & mask;
+        while (true) {
+            Object value = values[index];
+            if (value == null) return null;
+            if (keys[index] == key) return (V) value;
+            index = (index + 1) & mask;
+        }
+    }
+
+    public int size() {
+        return table.size;
+    }
+
+    public synchronized void put(int key, V value) {
+        if (value == null) throw new IllegalArgumentException("null values are not supported");
+
+        Table current = table;
+        Table copy = copy(current, capacityFor(current.size + 1), Integer.MIN_VALUE, false);
+        table = insert(copy, key, value);
+    }
+
+    public synchronized void putAll(Map<Integer, ? extends V> entries) {
+        if (entries.isEmpty()) return;
+
+        Table current = table;
+        Table copy = copy(current, capacityFor(current.size + entries.size()), Integer.MIN_VALUE, false);
+        for (Map.Entry<Integer, ? extends V> entry : entries.entrySet()) {
+            if (entry.getValue() == null) continue;
+            copy = insert(copy, entry.getKey(), entry.getValue());
+        }
+        table = copy;
+    }
+
+    public synchronized void remove(int key) {
+        Table current = table;
+        if (get(key) == null) return;
+        table = copy(current, capacityFor(current.size - 1), key, true);
+    }
+
+    // Keeps the load factor at or below 0.5 so misses usually end on the first probe
+    private static int capacityFor(int size) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < size * 2) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static Table copy(Table source, int capacity, int skipKey, boolean skip) {
+        Table copy = new Table(new int[capacity], new Object[capacity], 0);
+        int[] keys = source.keys;
+        Object[] values = source.values;
+        for (int i = 0; i < keys.length; i++) {
+            if (values[i] == null || (skip && keys[i] == skipKey)) continue;
+            copy = insert(copy, keys[i], values[i]);
+        }
+        return copy;
+    }
+
+    // Only used on tables that are not published yet
+    private static Table insert(Table target, int key, Object value) {
+        int[] keys = target.keys;
+        Object[] values = target.values;
+        int mask = keys.length - 1;
+
+        int index = mix(key) & mask;
+        while (values[index] != null) {
+            if (keys[index] == key) {
+                values[index] = value;
+                return target;
+            }
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        values[index] = value;
+        return new Table(keys, values, target.size + 1);
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
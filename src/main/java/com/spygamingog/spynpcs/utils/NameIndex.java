@@ -0,0 +1,88 @@
+package com.spygamingog.spynpcs.utils;
+
+import org.bukkit.ChatColor;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * NPCs by name, normalized the way commands match them (colors stripped, case
+ * ignored). Exact lookups go through a hash map, prefix completion through a
+ * sorted map: a completion is one range query over the matching names instead
+ * of stripping and comparing every NPC name on every keystroke.
+ * <p>
+ * Writes are synchronized (they only happen on create/rename/remove), reads
+ * don't lock.
+ */
+public class NameIndex {
+    private final Map<String, Set<UUID>> byName = new ConcurrentHashMap<>();
+    // Normalized name -> name as shown in completions (colors stripped, case kept)
+    private final NavigableMap<String, String> sorted = new ConcurrentSkipListMap<>();
+    // What each NPC is currently indexed under, so a rename knows what to remove
+    private final Map<UUID, String> indexed = new ConcurrentHashMap<>();
+
+    public static String normalize(String name) {
+        if (name == null) return "";
+        String stripped = ChatColor.stripColor(name);
+        return stripped != null ? stripped.toLowerCase(Locale.ROOT) : "";
+    }
+
+    /**
+     * Indexes the NPC under its (new) name, replacing whatever it was indexed under before.
+     */
+    public synchronized void put(UUID uuid, String name) {
+        String key = normalize(name);
+        String previous = indexed.put(uuid, key);
+        if (key.equals(previous)) return;
+        if (previous != null) {
+            unlink(uuid, previous);
+        }
+
+        byName.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(uuid);
+        String display = ChatColor.stripColor(name);
+        sorted.putIfAbsent(key, display != null ? display : "");
+    }
+
+    public synchronized void remove(UUID uuid) {
+        String previous = indexed.remove(uuid);
+        if (previous != null) {
+            unlink(uuid, previous);
+        }
+    }
+
+    /**
+     * Any NPC with this name, or null. Names aren't unique; with duplicates, which one is unspecified.
+     */
+    public UUID find(String name) {
+        Set<UUID> matches = byName.get(normalize(name));
+        if (matches == null) return null;
+        Iterator<UUID> iterator = matches.iterator();
+        return iterator.hasNext() ? iterator.next() : null;
+    }
+
+    /**
+     * Names starting with the prefix (ignoring colors and case), in alphabetical order.
+     */
+    public List<String> complete(String prefix, int limit) {
+        String key = normalize(prefix);
+        // Every string starting with key sorts between key and key + the highest char
+        Collection<String> matches = sorted.subMap(key, true, key + Character.MAX_VALUE, false).values();
+        List<String> result = new ArrayList<>(Math.min(limit, 16));
+        for (String name : matches) {
+            if (result.size() >= limit) break;
+            result.add(name);
+        }
+        return result;
+    }
+
+    private void unlink(UUID uuid, String key) {
+        Set<UUID> matches = byName.get(key);
+        if (matches == null) return;
+        matches.remove(uuid);
+        if (matches.isEmpty()) {
+            byName.remove(key);
+            sorted.remove(key);
+        }
+    }
+}
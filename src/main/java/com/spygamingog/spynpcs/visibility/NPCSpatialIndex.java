@@ -0,0 +1,117 @@
+package com.spygamingog.spynpcs.visibility;
+
+import com.spygamingog.spynpcs.models.SpyNPC;
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Per-world grid of NPCs bucketed by chunk coordinates, so visibility checks
+ * only have to look at the cells around a player instead of every NPC.
+ */
+public class NPCSpatialIndex {
+    private static final int CELL_SHIFT = 4; // 16x16 cells, same as chunks
+
+    // world name -> cell key -> NPCs in that cell
+    private final Map<String, Map<Long, Map<UUID, SpyNPC>>> worlds = new ConcurrentHashMap<>();
+    // NPC uuid -> cell it is currently indexed under
+    private final Map<UUID, Cell> cells = new ConcurrentHashMap<>();
+
+    private record Cell(String world, long key) {}
+
+    public void add(SpyNPC npc) {
+        Cell cell = cellOf(npc.getSnapshot().getLocation());
+        if (cell == null) return;
+
+        worlds.computeIfAbsent(cell.world(), k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(cell.key(), k -> new ConcurrentHashMap<>())
+                .put(npc.getUuid(), npc);
+        cells.put(npc.getUuid(), cell);
+    }
+
+    public void remove(SpyNPC npc) {
+        Cell cell = cells.remove(npc.getUuid());
+        if (cell == null) return;
+
+        Map<Long, Map<UUID, SpyNPC>> grid = worlds.get(cell.world());
+        if (grid == null) return;
+        grid.computeIfPresent(cell.key(), (k, bucket) -> {
+            bucket.remove(npc.getUuid());
+            return bucket.isEmpty() ? null : bucket;
+        });
+    }
+
+    /**
+     * Re-buckets an NPC after its location may have changed.
+     */
+    public void update(SpyNPC npc) {
+        Cell current = cells.get(npc.getUuid());
+        Cell target = cellOf(npc.getSnapshot().getLocation());
+        if (current != null && current.equals(target)) return;
+
+        remove(npc);
+        add(npc);
+    }
+
+    /**
+     * Visits every NPC indexed in a cell that intersects the square of the given
+     * radius around the location. Callers still need to do the exact distance check.
+     */
+    public void forEachNear(Location center, double radius, Consumer<SpyNPC> consumer) {
+        World world = center.getWorld();
+        if (world == null) return;
+
+        Map<Long, Map<UUID, SpyNPC>> grid = worlds.get(world.getName());
+        if (grid == null || grid.isEmpty()) return;
+
+        int minX = (int) Math.floor(center.getX() - radius) >> CELL_SHIFT;
+        int maxX = (int) Math.floor(center.getX() + radius) >> CELL_SHIFT;
+        int minZ = (int) Math.floor(center.getZ() - radius) >> CELL_SHIFT;
+        int maxZ = (int) Math.floor(center.getZ() + radius) >> CELL_SHIFT;
+
+        for (int cx = minX; cx <= maxX; cx++) {
+            for (int cz = minZ; cz <= maxZ; cz++) {
+                Map<UUID, SpyNPC> bucket = grid.get(key(cx, cz));
+                if (bucket != null) {
+                    bucket.values().forEach(consumer);
+                }
+            }
+        }
+    }
+
+    /**
+     * Every NPC indexed in the given world.
+     */
+    public Collection<SpyNPC> getNPCs(String worldName) {
+        Map<Long, Map<UUID, SpyNPC>> grid = worlds.get(worldName);
+        if (grid == null) return Collections.emptyList();
+
+        List<SpyNPC> result = new ArrayList<>();
+        for (Map<UUID, SpyNPC> bucket : grid.values()) {
+            result.addAll(bucket.values());
+        }
+        return result;
+    }
+
+    private static Cell cellOf(Location loc) {
+        if (loc == null) return null;
+
+        World world;
+        try {
+            world = loc.getWorld();
+        } catch (IllegalArgumentException e) {
+            // World is unloaded (SpyCore hibernation)
+            return null;
+        }
+        if (world == null) return null;
+
+        return new Cell(world.getName(), key(loc.getBlockX() >> CELL_SHIFT, loc.getBlockZ() >> CELL_SHIFT));
+    }
+
+    private static long key(int cx, int cz) {
+        return ((long) cx << 32) | (cz & 0xFFFFFFFFL);
+    }
+}
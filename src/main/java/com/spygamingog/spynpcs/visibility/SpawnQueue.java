@@ -0,0 +1,116 @@
+package com.spygamingog.spynpcs.visibility;
+
+import com.spygamingog.spynpcs.models.SpyNPC;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-player queue of NPCs waiting to be spawned, closest first. The visibility
+ * task drains a limited number per player each tick so a player arriving in a
+ * dense hub gets the nearby NPCs immediately and the rest over the next ticks.
+ */
+public class SpawnQueue {
+    private final Map<UUID, PlayerQueue> queues = new ConcurrentHashMap<>();
+    private final AtomicLong lastDrainNanos = new AtomicLong();
+    private final AtomicLong maxDrainNanos = new AtomicLong();
+
+    private record Entry(SpyNPC npc, double distanceSquared) {}
+
+    private static class PlayerQueue {
+        private final PriorityQueue<Entry> heap = new PriorityQueue<>(Comparator.comparingDouble(Entry::distanceSquared));
+        // Source of truth for what is queued, heap entries not in here are stale and skipped
+        private final Set<UUID> pending = new HashSet<>();
+        private long startedAt;
+    }
+
+    public void enqueue(UUID playerUuid, SpyNPC npc, double distanceSquared) {
+        PlayerQueue queue = queues.computeIfAbsent(playerUuid, k -> new PlayerQueue());
+        synchronized (queue) {
+            if (!queue.pending.add(npc.getUuid())) return;
+            if (queue.pending.size() == 1) {
+                queue.startedAt = System.nanoTime();
+            }
+            queue.heap.add(new Entry(npc, distanceSquared));
+        }
+    }
+
+    public void cancel(UUID playerUuid, UUID npcUuid) {
+        PlayerQueue queue = queues.get(playerUuid);
+        if (queue == null) return;
+        synchronized (queue) {
+            queue.pending.remove(npcUuid);
+            if (queue.pending.isEmpty()) {
+                queue.heap.clear();
+            }
+        }
+    }
+
+    public void cancelAll(UUID npcUuid) {
+        for (UUID playerUuid : queues.keySet()) {
+            cancel(playerUuid, npcUuid);
+        }
+    }
+
+    /**
+     * Takes up to {@code budget} of the closest queued NPCs for the player.
+     * A budget of 0 or less takes everything.
+     */
+    public List<SpyNPC> poll(UUID playerUuid, int budget) {
+        PlayerQueue queue = queues.get(playerUuid);
+        if (queue == null) return Collections.emptyList();
+
+        List<SpyNPC> polled = new ArrayList<>();
+        synchronized (queue) {
+            while ((budget <= 0 || polled.size() < budget) && !queue.heap.isEmpty()) {
+                Entry entry = queue.heap.poll();
+                if (queue.pending.remove(entry.npc().getUuid())) {
+                    polled.add(entry.npc());
+                }
+            }
+            if (queue.pending.isEmpty() && !polled.isEmpty()) {
+                queue.heap.clear();
+                recordDrain(System.nanoTime() - queue.startedAt);
+            }
+        }
+        return polled;
+    }
+
+    public Set<UUID> getPlayers() {
+        return queues.keySet();
+    }
+
+    public void clear(UUID playerUuid) {
+        queues.remove(playerUuid);
+    }
+
+    /**
+     * Total number of NPC spawns waiting across all players.
+     */
+    public int getDepth() {
+        int depth = 0;
+        for (PlayerQueue queue : queues.values()) {
+            synchronized (queue) {
+                depth += queue.pending.size();
+            }
+        }
+        return depth;
+    }
+
+    /**
+     * Time it took the most recently emptied queue to go from its first entry to empty.
+     */
+    public long getLastDrainMillis() {
+        return lastDrainNanos.get() / 1_000_000L;
+    }
+
+    public long getMaxDrainMillis() {
+        return maxDrainNanos.get() / 1_000_000L;
+    }
+
+    private void recordDrain(long nanos) {
+        lastDrainNanos.set(nanos);
+        maxDrainNanos.accumulateAndGet(nanos, Math::max);
+    }
+}
@@ -0,0 +1,78 @@
+package com.spygamingog.spynpcs.visibility;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Runs the visibility passes of one tick, spread over a ForkJoinPool when there
+ * are enough of them. A pass only touches its own player's state (visible bits,
+ * spawn queue, packet batch), so passes of different players run in parallel and
+ * every player still gets its packets in one write.
+ */
+public class VisibilityExecutor {
+    // Null when passes run on the calling thread only
+    private final ForkJoinPool pool;
+    private final int threshold;
+
+    /**
+     * @param parallelism threads, 0 = one per core, 1 = no pool at all
+     * @param threshold   fewer passes than this run on the calling thread
+     */
+    public VisibilityExecutor(int parallelism, int threshold) {
+        this.pool = createPool(parallelism);
+        this.threshold = Math.max(1, threshold);
+    }
+
+    private static ForkJoinPool createPool(int parallelism) {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        if (threads <= 1) return null;
+
+        AtomicInteger threadId = new AtomicInteger();
+        return new ForkJoinPool(threads, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("SpyNPCs-Visibility-" + threadId.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+    }
+
+    /**
+     * Runs the pass for every item and returns once all of them are done.
+     */
+    public <T> void run(List<T> items, Consumer<T> pass) {
+        // The pool is shut down on disable, a tick that outlived the wait finishes serially
+        if (pool == null || pool.isShutdown() || items.size() < threshold) {
+            for (T item : items) {
+                pass.accept(item);
+            }
+            return;
+        }
+
+        // A few shards per thread so one slow player (dense hub) doesn't hold up a whole thread's share
+        int shards = Math.min(items.size(), pool.getParallelism() * 4);
+        int shardSize = (items.size() + shards - 1) / shards;
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(shards);
+        for (int from = 0; from < items.size(); from += shardSize) {
+            List<T> shard = items.subList(from, Math.min(items.size(), from + shardSize));
+            tasks.add(pool.submit(() -> {
+                for (T item : shard) {
+                    pass.accept(item);
+                }
+            }));
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+    }
+
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+}
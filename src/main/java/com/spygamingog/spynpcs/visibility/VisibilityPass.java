@@ -0,0 +1,174 @@
+package com.spygamingog.spynpcs.visibility;
+
+import com.spygamingog.spynpcs.models.SpyNPC;
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * The per-player part of the visibility task: which NPCs came into or went out of
+ * a player's range since the last pass. Works on a UUID and a location only, no
+ * players, packets or scheduler, so the benchmarks run this exact code.
+ * <p>
+ * Only NPCs in the grid cells around the player can come into range. Visible NPCs
+ * only despawn once the player is past the despawn distance, which is a bit
+ * further than the spawn distance, so walking along the edge doesn't make the
+ * NPC flicker in and out.
+ */
+public class VisibilityPass {
+    private final NPCSpatialIndex spatialIndex;
+    private final VisibilityTracker visibility;
+    private final double spawnDistance;
+    private final double despawnMargin;
+    // Cap on per-NPC view distances, the grid scan grows with the square of it
+    private final double maxViewDistance;
+    // Largest spawn distance of any NPC, how far around a player the grid has to be scanned
+    private volatile double maxSpawnDistance;
+    // NPCs seen further away than spawnDistance and how many there are per distance, so
+    // maxSpawnDistance can shrink again. Guarded by farDistances.
+    private final Map<UUID, Double> farNpcs = new HashMap<>();
+    private final TreeMap<Double, Integer> farDistances = new TreeMap<>();
+
+    /**
+     * What a pass found, called on the thread running the pass.
+     */
+    public interface Changes {
+        /**
+         * In range and not visible yet.
+         */
+        void enterRange(SpyNPC npc, double distanceSquared);
+
+        /**
+         * Not visible and not in range, a spawn queued for it is stale.
+         */
+        void outOfRange(SpyNPC npc);
+
+        /**
+         * Was visible and went out of range, already marked as not visible.
+         */
+        void leaveRange(SpyNPC npc);
+    }
+
+    public VisibilityPass(NPCSpatialIndex spatialIndex, VisibilityTracker visibility, double spawnDistance,
+                          double despawnDistance, double maxViewDistance) {
+        this.spatialIndex = spatialIndex;
+        this.visibility = visibility;
+        this.spawnDistance = Math.max(1.0, spawnDistance);
+        this.despawnMargin = Math.max(0.0, despawnDistance - this.spawnDistance);
+        this.maxViewDistance = Math.max(this.spawnDistance, maxViewDistance);
+        this.maxSpawnDistance = this.spawnDistance;
+    }
+
+    /**
+     * Runs one pass for the player. Passes of different players may run at the same time.
+     *
+     * @return how many NPCs were distance-checked
+     */
+    public int run(UUID player, Location playerLoc, Changes changes) {
+        BitSet evaluated = new BitSet();
+
+        spatialIndex.forEachNear(playerLoc, maxSpawnDistance, npc -> {
+            int index = visibility.indexOf(npc.getUuid());
+            if (index < 0) return;
+            evaluated.set(index);
+            boolean isVisible = visibility.isVisible(player, npc);
+            boolean shouldBeVisible = shouldBeVisible(playerLoc, npc, isVisible);
+
+            if (shouldBeVisible && !isVisible) {
+                changes.enterRange(npc, playerLoc.distanceSquared(npc.getSnapshot().getLocation()));
+            } else if (!shouldBeVisible && isVisible) {
+                visibility.setVisible(player, npc, false);
+                changes.leaveRange(npc);
+            } else if (!shouldBeVisible) {
+                changes.outOfRange(npc);
+            }
+        });
+
+        // Anything still visible outside those cells has gone out of range
+        visibility.forEachVisible(player, evaluated, npc -> {
+            if (!shouldBeVisible(playerLoc, npc, true)) {
+                visibility.setVisible(player, npc, false);
+                changes.leaveRange(npc);
+            }
+        });
+        return evaluated.cardinality();
+    }
+
+    public boolean shouldBeVisible(Location playerLoc, SpyNPC npc, boolean currentlyVisible) {
+        // Read without copying, the snapshot's location is never modified
+        Location loc = npc.getSnapshot().getLocation();
+        if (loc == null) return false;
+
+        try {
+            World npcWorld = loc.getWorld();
+            if (npcWorld == null || !npcWorld.equals(playerLoc.getWorld())) return false;
+        } catch (IllegalArgumentException e) {
+            // World is unloaded (SpyCore hibernation)
+            return false;
+        }
+
+        double range = getSpawnDistance(npc);
+        if (currentlyVisible) {
+            range += despawnMargin;
+        }
+        return playerLoc.distanceSquared(loc) < range * range;
+    }
+
+    /**
+     * The NPC's view distance, capped at the maximum; the default if it has none or
+     * an invalid one (e.g. edited into a file by hand).
+     */
+    public double getSpawnDistance(SpyNPC npc) {
+        Double viewDistance = npc.getViewDistance();
+        if (viewDistance == null || !Double.isFinite(viewDistance) || viewDistance <= 0) return spawnDistance;
+        return Math.min(viewDistance, maxViewDistance);
+    }
+
+    public double getMaxViewDistance() {
+        return maxViewDistance;
+    }
+
+    /**
+     * Takes the NPC's current view distance into account for the grid scan, call
+     * after registering it and after changing its view distance.
+     */
+    public void trackViewDistance(SpyNPC npc) {
+        double distance = getSpawnDistance(npc);
+        synchronized (farDistances) {
+            forgetFarDistance(npc.getUuid());
+            if (distance > spawnDistance) {
+                farNpcs.put(npc.getUuid(), distance);
+                farDistances.merge(distance, 1, Integer::sum);
+            }
+            updateMaxSpawnDistance();
+        }
+    }
+
+    public void untrackViewDistance(SpyNPC npc) {
+        synchronized (farDistances) {
+            forgetFarDistance(npc.getUuid());
+            updateMaxSpawnDistance();
+        }
+    }
+
+    public double getMaxSpawnDistance() {
+        return maxSpawnDistance;
+    }
+
+    private void forgetFarDistance(UUID npcUuid) {
+        Double previous = farNpcs.remove(npcUuid);
+        if (previous != null) {
+            // Drops the distance once no NPC has it any more
+            farDistances.merge(previous, -1, (count, delta) -> count + delta == 0 ? null : count + delta);
+        }
+    }
+
+    private void updateMaxSpawnDistance() {
+        maxSpawnDistance = farDistances.isEmpty() ? spawnDistance : farDistances.lastKey();
+    }
+}
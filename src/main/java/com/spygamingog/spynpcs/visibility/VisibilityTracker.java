@@ -0,0 +1,181 @@
+package com.spygamingog.spynpcs.visibility;
+
+import com.spygamingog.spynpcs.models.SpyNPC;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Which player sees which NPC, in both directions. NPCs and online players get
+ * small dense indexes (freed indexes are reused), so a player's visible NPCs are
+ * a BitSet of NPC indexes and an NPC's viewers (the reverse index, used by
+ * refresh/removal to only touch actual viewers) are a BitSet of player indexes,
+ * instead of sets of boxed UUIDs.
+ * <p>
+ * The visibility task is the main writer, the main thread reads and writes on
+ * refresh/removal. A player's bits are guarded by its {@link Viewer}, an NPC's
+ * viewer bits by its {@link Slot}; when both are needed the viewer is locked first.
+ */
+public class VisibilityTracker {
+    private final Map<UUID, Integer> npcIndexes = new ConcurrentHashMap<>();
+    private final Deque<Integer> freeNpcIndexes = new ArrayDeque<>();
+    private volatile Slot[] slots = new Slot[64];
+    private int nextNpcIndex;
+
+    private final Map<UUID, Viewer> viewers = new ConcurrentHashMap<>();
+    private final Deque<Integer> freePlayerIndexes = new ArrayDeque<>();
+    private volatile UUID[] players = new UUID[64];
+    private int nextPlayerIndex;
+
+    private record Slot(SpyNPC npc, BitSet viewers) {}
+
+    private record Viewer(int index, BitSet npcs) {}
+
+    public synchronized void register(SpyNPC npc) {
+        if (npcIndexes.containsKey(npc.getUuid())) return;
+
+        Integer free = freeNpcIndexes.poll();
+        int index = free != null ? free : nextNpcIndex++;
+        if (index >= slots.length) {
+            slots = Arrays.copyOf(slots, Math.max(index + 1, slots.length * 2));
+        }
+        slots[index] = new Slot(npc, new BitSet());
+        npcIndexes.put(npc.getUuid(), index);
+    }
+
+    /**
+     * Forgets the NPC and clears it from every player. Despawn it for the viewers
+     * before calling this, see {@link #getViewers(UUID)}.
+     */
+    public synchronized void unregister(SpyNPC npc) {
+        Integer index = npcIndexes.remove(npc.getUuid());
+        if (index == null) return;
+
+        // Slot first: a concurrent setVisible checks it under the viewer's lock, so after
+        // clearing every player's bit below no stale bit can be left for the next owner
+        slots[index] = null;
+        for (Viewer viewer : viewers.values()) {
+            synchronized (viewer) {
+                viewer.npcs().clear(index);
+            }
+        }
+        freeNpcIndexes.push(index);
+    }
+
+    /**
+     * Dense index of the NPC, or -1 if it isn't registered.
+     */
+    public int indexOf(UUID npc) {
+        Integer index = npcIndexes.get(npc);
+        return index != null ? index : -1;
+    }
+
+    public boolean isVisible(UUID player, SpyNPC npc) {
+        int index = indexOf(npc.getUuid());
+        if (index < 0) return false;
+        Viewer viewer = viewers.get(player);
+        if (viewer == null) return false;
+        synchronized (viewer) {
+            return viewer.npcs().get(index);
+        }
+    }
+
+    public void setVisible(UUID player, SpyNPC npc, boolean isVisible) {
+        int index = indexOf(npc.getUuid());
+        if (index < 0) return;
+
+        Viewer viewer = viewers.computeIfAbsent(player, this::newViewer);
+        synchronized (viewer) {
+            Slot slot = slots[index];
+            if (slot == null || slot.npc() != npc || viewer.npcs().get(index) == isVisible) return;
+
+            viewer.npcs().set(index, isVisible);
+            synchronized (slot) {
+                slot.viewers().set(viewer.index(), isVisible);
+            }
+        }
+    }
+
+    /**
+     * Players that currently see the NPC, copied so the caller can change visibility while iterating.
+     */
+    public List<UUID> getViewers(UUID npc) {
+        int index = indexOf(npc);
+        if (index < 0) return Collections.emptyList();
+        Slot slot = slots[index];
+        if (slot == null) return Collections.emptyList();
+
+        BitSet bits;
+        synchronized (slot) {
+            if (slot.viewers().isEmpty()) return Collections.emptyList();
+            bits = (BitSet) slot.viewers().clone();
+        }
+        UUID[] current = players;
+        List<UUID> result = new ArrayList<>(bits.cardinality());
+        for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+            if (i < current.length && current[i] != null) {
+                result.add(current[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Runs the action for every NPC visible to the player whose index isn't set in {@code skip}.
+     */
+    public void forEachVisible(UUID player, BitSet skip, Consumer<SpyNPC> action) {
+        Viewer viewer = viewers.get(player);
+        if (viewer == null) return;
+
+        BitSet remaining;
+        synchronized (viewer) {
+            remaining = (BitSet) viewer.npcs().clone();
+        }
+        if (skip != null) {
+            remaining.andNot(skip);
+        }
+        Slot[] current = slots;
+        for (int index = remaining.nextSetBit(0); index >= 0; index = remaining.nextSetBit(index + 1)) {
+            Slot slot = index < current.length ? current[index] : null;
+            if (slot != null) {
+                action.accept(slot.npc());
+            }
+        }
+    }
+
+    /**
+     * Drops everything about the player, called on quit.
+     */
+    public void forget(UUID player) {
+        Viewer viewer = viewers.remove(player);
+        if (viewer == null) return;
+
+        synchronized (viewer) {
+            Slot[] current = slots;
+            BitSet npcs = viewer.npcs();
+            for (int index = npcs.nextSetBit(0); index >= 0; index = npcs.nextSetBit(index + 1)) {
+                Slot slot = index < current.length ? current[index] : null;
+                if (slot == null) continue;
+                synchronized (slot) {
+                    slot.viewers().clear(viewer.index());
+                }
+            }
+            npcs.clear();
+        }
+        synchronized (this) {
+            players[viewer.index()] = null;
+            freePlayerIndexes.push(viewer.index());
+        }
+    }
+
+    private synchronized Viewer newViewer(UUID player) {
+        Integer free = freePlayerIndexes.poll();
+        int index = free != null ? free : nextPlayerIndex++;
+        if (index >= players.length) {
+            players = Arrays.copyOf(players, Math.max(index + 1, players.length * 2));
+        }
+        players[index] = player;
+        return new Viewer(index, new BitSet());
+    }
+}